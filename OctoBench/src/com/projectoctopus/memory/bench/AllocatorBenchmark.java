@@ -0,0 +1,160 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * Benchmarks {@link Memory#m_alloc}/{@link Memory#m_free}, {@link Memory#m_arrange}, {@link Memory#free_} and
+ * {@link Memory#first_free} on fragmented memories (one 16-byte block allocated out of two)
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocatorBenchmark {
+
+	/**
+	 * The size of the blocks the memories are fragmented with
+	 */
+	static final int BLOCK = 16;
+
+	@State(Scope.Thread)
+	public static class Fragmented {
+
+		/**
+		 * The memory sizes, from {@link Memory#MIN_SIZE} to {@link Memory#MAX_SIZE}
+		 */
+		@Param({ "16", "4096", "1048576", "64000000" })
+		public int size;
+
+		Memory memory;
+
+		@Setup(Level.Trial)
+		public void setup() throws MemoryException {
+			memory = fragment(new Memory(size));
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class Full {
+
+		/**
+		 * The memory sizes, from {@link Memory#MIN_SIZE} to {@link Memory#MAX_SIZE}
+		 */
+		@Param({ "16", "4096", "1048576", "64000000" })
+		public int size;
+
+		Memory memory;
+
+		@Setup(Level.Trial)
+		public void setup() throws MemoryException {
+			memory = new Memory(size);
+			Memory.m_alloc(memory, size - 1); /* the only free byte is the last one */
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class Arranged {
+
+		/**
+		 * The memory sizes, from {@link Memory#MIN_SIZE} to {@link Memory#MAX_SIZE}
+		 */
+		@Param({ "16", "4096", "1048576", "64000000" })
+		public int size;
+
+		Memory memory;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			memory = new Memory(size);
+		}
+
+		@Setup(Level.Invocation)
+		public void fragment() throws MemoryException {
+			Memory.m_free(memory, 0, size);
+			AllocatorBenchmark.fragment(memory);
+		}
+
+	}
+
+	/**
+	 * Allocates a memory with 16-byte blocks and frees one out of two
+	 * @param memory The memory to fragment
+	 * @return The memory
+	 * @throws MemoryException
+	 */
+	static Memory fragment(Memory memory) throws MemoryException {
+		int blocks = Memory.size_(memory) / BLOCK;
+		for (int b = 0; b < blocks; b++)
+			Memory.m_alloc(memory, BLOCK);
+		for (int b = 0; b < blocks; b += 2)
+			Memory.m_free(memory, b * BLOCK, BLOCK);
+		return memory;
+	}
+
+	@Benchmark
+	public int m_alloc_free(Fragmented state) throws MemoryException {
+		int ptr = Memory.m_alloc(state.memory, BLOCK);
+		Memory.m_free(state.memory, ptr, BLOCK);
+		return ptr;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Measurement(iterations = 20)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Memory m_arrange(Arranged state) {
+		Memory.m_arrange(state.memory, 0);
+		return state.memory;
+	}
+
+	@Benchmark
+	public int free_(Fragmented state) {
+		return Memory.free_(state.memory);
+	}
+
+	@Benchmark
+	public int first_free(Full state) {
+		return Memory.first_free(state.memory);
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryReader;
+import com.projectoctopus.memory.MemoryWriter;
+
+/**
+ * Benchmarks every {@link MemoryReader} <code>read_*</code> primitive and array overload
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+	/**
+	 * The memory sizes, from {@link Memory#MIN_SIZE} to {@link Memory#MAX_SIZE}
+	 */
+	@Param({ "16", "4096", "1048576", "64000000" })
+	public int size;
+
+	/**
+	 * The number of elements of the arrays (as many as fit in the memory, at most 64)
+	 */
+	int length;
+
+	Memory memory;
+
+	@Setup
+	public void setup() {
+		memory = new Memory(size);
+		length = Math.min(64, size / Long.BYTES);
+		MemoryWriter.write_(memory, 0, new byte[size]); /* every byte allocated, and valid as a boolean */
+	}
+
+	@Benchmark
+	public boolean read_bool() {
+		return MemoryReader.read_bool(memory, 0);
+	}
+
+	@Benchmark
+	public boolean[] read_bool_array() {
+		return MemoryReader.read_bool_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public byte read_byte() {
+		return MemoryReader.read_byte(memory, 0);
+	}
+
+	@Benchmark
+	public byte[] read_byte_array() {
+		return MemoryReader.read_byte_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public char read_char() {
+		return MemoryReader.read_char(memory, 0);
+	}
+
+	@Benchmark
+	public char[] read_char_array() {
+		return MemoryReader.read_char_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public double read_double() {
+		return MemoryReader.read_double(memory, 0);
+	}
+
+	@Benchmark
+	public double[] read_double_array() {
+		return MemoryReader.read_double_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public float read_float() {
+		return MemoryReader.read_float(memory, 0);
+	}
+
+	@Benchmark
+	public float[] read_float_array() {
+		return MemoryReader.read_float_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public int read_int() {
+		return MemoryReader.read_int(memory, 0);
+	}
+
+	@Benchmark
+	public int[] read_int_array() {
+		return MemoryReader.read_int_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public long read_long() {
+		return MemoryReader.read_long(memory, 0);
+	}
+
+	@Benchmark
+	public long[] read_long_array() {
+		return MemoryReader.read_long_array(memory, 0, length);
+	}
+
+	@Benchmark
+	public short read_short() {
+		return MemoryReader.read_short(memory, 0);
+	}
+
+	@Benchmark
+	public short[] read_short_array() {
+		return MemoryReader.read_short_array(memory, 0, length);
+	}
+
+}
@@ -0,0 +1,175 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryWriter;
+
+/**
+ * Benchmarks every {@link MemoryWriter#write_} primitive and array overload
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+
+	/**
+	 * The memory sizes, from {@link Memory#MIN_SIZE} to {@link Memory#MAX_SIZE}
+	 */
+	@Param({ "16", "4096", "1048576", "64000000" })
+	public int size;
+
+	/**
+	 * The number of elements of the arrays (as many as fit in the memory, at most 64)
+	 */
+	int length;
+
+	Memory memory;
+
+	boolean[] booleans;
+
+	byte[] bytes;
+
+	char[] chars;
+
+	double[] doubles;
+
+	float[] floats;
+
+	int[] ints;
+
+	long[] longs;
+
+	short[] shorts;
+
+	@Setup
+	public void setup() {
+		memory = new Memory(size);
+		length = Math.min(64, size / Long.BYTES);
+		booleans = new boolean[length];
+		bytes = new byte[length];
+		chars = new char[length];
+		doubles = new double[length];
+		floats = new float[length];
+		ints = new int[length];
+		longs = new long[length];
+		shorts = new short[length];
+	}
+
+	@Benchmark
+	public int write_boolean() {
+		return MemoryWriter.write_(memory, 0, true);
+	}
+
+	@Benchmark
+	public int write_boolean_array() {
+		return MemoryWriter.write_(memory, 0, booleans);
+	}
+
+	@Benchmark
+	public int write_byte() {
+		return MemoryWriter.write_(memory, 0, (byte) 0x2a);
+	}
+
+	@Benchmark
+	public int write_byte_array() {
+		return MemoryWriter.write_(memory, 0, bytes);
+	}
+
+	@Benchmark
+	public int write_char() {
+		return MemoryWriter.write_(memory, 0, '*');
+	}
+
+	@Benchmark
+	public int write_char_array() {
+		return MemoryWriter.write_(memory, 0, chars);
+	}
+
+	@Benchmark
+	public int write_double() {
+		return MemoryWriter.write_(memory, 0, 42.0d);
+	}
+
+	@Benchmark
+	public int write_double_array() {
+		return MemoryWriter.write_(memory, 0, doubles);
+	}
+
+	@Benchmark
+	public int write_float() {
+		return MemoryWriter.write_(memory, 0, 42.0f);
+	}
+
+	@Benchmark
+	public int write_float_array() {
+		return MemoryWriter.write_(memory, 0, floats);
+	}
+
+	@Benchmark
+	public int write_int() {
+		return MemoryWriter.write_(memory, 0, 42);
+	}
+
+	@Benchmark
+	public int write_int_array() {
+		return MemoryWriter.write_(memory, 0, ints);
+	}
+
+	@Benchmark
+	public int write_long() {
+		return MemoryWriter.write_(memory, 0, 42L);
+	}
+
+	@Benchmark
+	public int write_long_array() {
+		return MemoryWriter.write_(memory, 0, longs);
+	}
+
+	@Benchmark
+	public int write_short() {
+		return MemoryWriter.write_(memory, 0, (short) 42);
+	}
+
+	@Benchmark
+	public int write_short_array() {
+		return MemoryWriter.write_(memory, 0, shorts);
+	}
+
+}
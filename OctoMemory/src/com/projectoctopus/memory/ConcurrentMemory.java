@@ -0,0 +1,282 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Represents a memory that many threads can allocate into, write and read at once<br>
+ * <br>
+ * <b>Allocation :</b> the memory is split into stripes, each one with its own allocator and lock. A thread allocates
+ * from its home stripe and only moves on to the others if that one is busy or full, so that allocation throughput
+ * scales with the number of cores. A single allocation can't be larger than a stripe.<br>
+ * <br>
+ * <b>Allocation flags :</b> flag words are updated atomically, so that threads writing neighbouring bytes never lose
+ * each other's flags.<br>
+ * <br>
+ * <b>Visibility :</b> data is read and written with plain accesses. A value written with
+ * {@link MemoryWriter#write_} is visible to a {@link MemoryReader#read_int read_} of another thread once its pointer
+ * was handed over through a happens-before edge : a lock, a volatile, a concurrent collection, or
+ * {@link #write_release}/{@link #read_acquire} on a word of the memory itself. {@link #m_compact} and
+ * {@link #m_swap} need the memory to themselves.
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class ConcurrentMemory extends Memory {
+
+	/**
+	 * The maximum number of stripes
+	 */
+	public static final int MAX_STRIPES = 64;
+
+	private static final VarHandle FLAGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final MemoryAllocator[] stripes;
+
+	private final ReentrantLock[] locks;
+
+	/**
+	 * The size of a stripe in bytes (a multiple of 64, so that stripes don't share flag words)
+	 */
+	private final long stripe;
+
+	/**
+	 * Initializes a new size-byte concurrent Memory, with 4 stripes per core
+	 * @param size The size of the new Memory in bytes
+	 * @throws IllegalArgumentException
+	 */
+	public ConcurrentMemory(int size) {
+		this(size, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Initializes a new size-byte concurrent Memory
+	 * @param size The size of the new Memory in bytes
+	 * @param stripes The number of stripes (at most {@link #MAX_STRIPES})
+	 * @throws IllegalArgumentException
+	 */
+	public ConcurrentMemory(int size, int stripes) {
+		super(size);
+		if (stripes < 1) throw new IllegalArgumentException("A memory needs at least one stripe");
+		long stripe = ((size + Math.min(stripes, MAX_STRIPES) - 1) / Math.min(stripes, MAX_STRIPES) + 63) & ~63L;
+		this.stripe = stripe;
+		this.stripes = new MemoryAllocator[(int) ((size + stripe - 1) / stripe)];
+		this.locks = new ReentrantLock[this.stripes.length];
+		for (int s = 0; s < this.stripes.length; s++) {
+			this.stripes[s] = new MemoryAllocator(s * stripe, Math.min(stripe, size - s * stripe));
+			this.locks[s] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * @return The size of a stripe in bytes, the largest single allocation
+	 */
+	long stripe_size() {
+		return stripe;
+	}
+
+	/**
+	 * Writes a long (in the memory's byte order) with release semantics : every write made before by this thread is visible to a
+	 * thread reading it with {@link #read_acquire}
+	 * @param ptr The pointer to write at (8-byte aligned)
+	 * @param value The value to write
+	 * @return The pointer past the value
+	 * @throws IllegalStateException if ptr isn't 8-byte aligned
+	 */
+	public long write_release(long ptr, long value) {
+		if (little) MemoryAccess.LONG_LE.setRelease(data, (int) ptr, value);
+		else MemoryAccess.LONG.setRelease(data, (int) ptr, value);
+		m_flag(this, ptr, Long.BYTES, true);
+		return ptr + Long.BYTES;
+	}
+
+	/**
+	 * Reads a long (in the memory's byte order) with acquire semantics : every write made by a thread before its
+	 * {@link #write_release} of this value is visible afterwards
+	 * @param ptr The pointer to read at (8-byte aligned)
+	 * @return The value
+	 * @throws IllegalStateException if ptr isn't 8-byte aligned
+	 */
+	public long read_acquire(long ptr) {
+		return little ? (long) MemoryAccess.LONG_LE.getAcquire(data, (int) ptr) : (long) MemoryAccess.LONG.getAcquire(data, (int) ptr);
+	}
+
+	/**
+	 * Atomically replaces a long (in the memory's byte order) if it holds the expected value
+	 * @param ptr The pointer of the value (8-byte aligned)
+	 * @param expected The expected value
+	 * @param value The new value
+	 * @return <b>true</b> if replaced<br>
+	 *         <b>false</b> otherwise
+	 * @throws IllegalStateException if ptr isn't 8-byte aligned
+	 */
+	public boolean compare_and_set(long ptr, long expected, long value) {
+		return little ? MemoryAccess.LONG_LE.compareAndSet(data, (int) ptr, expected, value) : MemoryAccess.LONG.compareAndSet(data, (int) ptr, expected, value);
+	}
+
+	@Override
+	long allocate(long size) {
+		int n = stripes.length, home = (int) (Thread.currentThread().getId() % n);
+		long busy = 0; /* the stripes that were locked by other threads on the first pass */
+		for (int k = 0; k < n; k++) { /* first pass : never waits */
+			int s = (home + k) % n;
+			if (!locks[s].tryLock()) {
+				busy |= 1L << s;
+				continue;
+			}
+			try {
+				long ptr = stripes[s].alloc(this, size);
+				if (ptr != -1) return flagged_(ptr, size);
+			} finally {
+				locks[s].unlock();
+			}
+		}
+		for (int k = 0; k < n; k++) { /* second pass : waits for the busy ones */
+			int s = (home + k) % n;
+			if ((busy & (1L << s)) == 0) continue;
+			locks[s].lock();
+			try {
+				long ptr = stripes[s].alloc(this, size);
+				if (ptr != -1) return flagged_(ptr, size);
+			} finally {
+				locks[s].unlock();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Flags an allocated range while its stripe is still locked (stripes don't share flag words)
+	 * @param ptr The range's pointer
+	 * @param size The range's size in bytes
+	 * @return The range's pointer
+	 */
+	private long flagged_(long ptr, long size) {
+		flag_range(this, ptr, size, true);
+		return ptr;
+	}
+
+	@Override
+	void release(long ptr, long size) {
+		long end = ptr + size;
+		while (ptr < end) { /* one piece per stripe crossed */
+			int s = (int) (ptr / stripe);
+			long piece = Math.min(end, (s + 1) * stripe) - ptr;
+			locks[s].lock();
+			try {
+				flag_range(this, ptr, piece, false);
+				stripes[s].free(ptr, piece);
+			} finally {
+				locks[s].unlock();
+			}
+			ptr += piece;
+		}
+	}
+
+	@Override
+	void claim(long ptr, long size) {
+		long end = ptr + size;
+		while (ptr < end) { /* one piece per stripe crossed */
+			int s = (int) (ptr / stripe);
+			long piece = Math.min(end, (s + 1) * stripe) - ptr;
+			locks[s].lock();
+			try {
+				stripes[s].take(ptr, piece);
+			} finally {
+				locks[s].unlock();
+			}
+			ptr += piece;
+		}
+	}
+
+	@Override
+	void invalidate() {
+		for (int s = 0; s < stripes.length; s++) {
+			locks[s].lock();
+			try {
+				stripes[s].stale = true;
+			} finally {
+				locks[s].unlock();
+			}
+		}
+	}
+
+	@Override
+	long free_bytes() {
+		long free = 0;
+		for (int s = 0; s < stripes.length; s++) {
+			locks[s].lock();
+			try {
+				free += stripes[s].available(this);
+			} finally {
+				locks[s].unlock();
+			}
+		}
+		return free;
+	}
+
+	@Override
+	boolean exclusive_(BooleanSupplier action) {
+		int s = 0;
+		try {
+			for (; s < locks.length; s++) /* always in the same order, so that two callers never deadlock */
+				locks[s].lock();
+			return action.getAsBoolean();
+		} finally {
+			while (--s >= 0)
+				locks[s].unlock();
+		}
+	}
+
+	@Override
+	long largest_free() {
+		long largest = 0;
+		for (int s = 0; s < stripes.length; s++) {
+			locks[s].lock();
+			try {
+				largest = Math.max(largest, stripes[s].largest(this));
+			} finally {
+				locks[s].unlock();
+			}
+		}
+		return largest;
+	}
+
+	@Override
+	long word_(int i) {
+		return (long) FLAGS.getAcquire(alloc_f, i);
+	}
+
+	@Override
+	void flag_(int i, long mask, boolean allocated) {
+		if (allocated) FLAGS.getAndBitwiseOr(alloc_f, i, mask);
+		else FLAGS.getAndBitwiseAnd(alloc_f, i, ~mask);
+	}
+
+	@Override
+	void fill_words(int from, int to, long word) {
+		for (int i = from; i < to; i++) /* whole words belong to a single range, no need to merge */
+			FLAGS.setRelease(alloc_f, i, word);
+	}
+
+}
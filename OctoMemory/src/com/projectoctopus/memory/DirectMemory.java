@@ -0,0 +1,325 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Represents a memory whose data and allocation flags are held off-heap, in direct buffers<br>
+ * The garbage collector never scans nor copies them, and pointers are 64-bit so the memory can be far larger than
+ * {@link Memory#MAX_SIZE} : use the <code>long</code> pointer overloads of {@link MemoryReader} and
+ * {@link MemoryWriter} past 2GB<br>
+ * {@link Memory#data} and {@link Memory#alloc_f} are <b>null</b>
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class DirectMemory extends Memory {
+
+	/**
+	 * The maximum direct memory size value (the allocation flags are indexed by int words, 2^30 of them at most)
+	 */
+	public static final long MAX_DIRECT_SIZE = 1L << 36;
+
+	/**
+	 * Data is split into blocks of 2^BLOCK_SHIFT bytes, as a single buffer can't hold more than 2GB
+	 */
+	static final int BLOCK_SHIFT = 30;
+
+	static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+	/**
+	 * Allocation flags are split into blocks of 2^WORDS_SHIFT words (1GB)
+	 */
+	static final int WORDS_SHIFT = 27;
+
+	static final int WORDS_MASK = (1 << WORDS_SHIFT) - 1;
+
+	/**
+	 * The chunk size of back to front copies within the memory
+	 */
+	static final int COPY_SIZE = 64 * 1024;
+
+	final long size;
+
+	final ByteBuffer[] blocks;
+
+	final LongBuffer[] flags;
+
+	final int words;
+
+	/**
+	 * Initializes a new size-byte direct Memory
+	 * @param size The size of the new Memory in bytes
+	 * @throws IllegalArgumentException
+	 */
+	public DirectMemory(long size) {
+		super(check(size));
+		this.size = size;
+		blocks = new ByteBuffer[(int) ((size + BLOCK_MASK) >>> BLOCK_SHIFT)];
+		for (int b = 0; b < blocks.length; b++) /* every block is full but the last one */
+			blocks[b] = ByteBuffer.allocateDirect((int) Math.min(size - ((long) b << BLOCK_SHIFT), 1L << BLOCK_SHIFT));
+		words = (int) ((size + 63) >>> 6);
+		flags = flag_blocks(words);
+	}
+
+	/**
+	 * Initializes a direct Memory over a buffer, sharing its storage
+	 * @param buffer The buffer, from its position to its limit
+	 * @throws IllegalArgumentException
+	 */
+	DirectMemory(ByteBuffer buffer) {
+		this(buffer.remaining(), slices(buffer), flag_blocks((int) ((buffer.remaining() + 63L) >>> 6)));
+	}
+
+	/**
+	 * Initializes a direct Memory over already allocated buffers
+	 * @param size The size of the Memory in bytes
+	 * @param blocks The data blocks
+	 * @param flags The allocation flags blocks
+	 */
+	DirectMemory(long size, ByteBuffer[] blocks, LongBuffer[] flags) {
+		super(check(size));
+		this.size = size;
+		this.blocks = blocks;
+		this.flags = flags;
+		words = (int) ((size + 63) >>> 6);
+	}
+
+	private static LongBuffer[] flag_blocks(int words) {
+		LongBuffer[] flags = new LongBuffer[(words + WORDS_MASK) >>> WORDS_SHIFT];
+		for (int b = 0; b < flags.length; b++)
+			flags[b] = ByteBuffer.allocateDirect(Math.min(words - (b << WORDS_SHIFT), 1 << WORDS_SHIFT) * Long.BYTES).asLongBuffer();
+		return flags;
+	}
+
+	private static ByteBuffer[] slices(ByteBuffer buffer) {
+		int size = buffer.remaining();
+		ByteBuffer[] blocks = new ByteBuffer[(int) ((size + (long) BLOCK_MASK) >>> BLOCK_SHIFT)];
+		for (int b = 0; b < blocks.length; b++) /* every block is full but the last one */
+			blocks[b] = buffer.slice(buffer.position() + (b << BLOCK_SHIFT), (int) Math.min(size - ((long) b << BLOCK_SHIFT), 1L << BLOCK_SHIFT));
+		return blocks;
+	}
+
+	static long check(long size) {
+		/* Is the size in bounds of MIN_SIZE, MAX_DIRECT_SIZE */
+		if (MIN_SIZE > size || size > MAX_DIRECT_SIZE) throw new IllegalArgumentException("Memory size must be between : " + MIN_SIZE + " bytes and " + MAX_DIRECT_SIZE + " bytes.");
+		return size;
+	}
+
+	@Override
+	long capacity() {
+		return size;
+	}
+
+	@Override
+	int words() {
+		return words;
+	}
+
+	@Override
+	long word_(int i) {
+		return flags[i >>> WORDS_SHIFT].get(i & WORDS_MASK);
+	}
+
+	@Override
+	void flag_(int i, long mask, boolean allocated) {
+		LongBuffer block = flags[i >>> WORDS_SHIFT];
+		long word = block.get(i & WORDS_MASK);
+		block.put(i & WORDS_MASK, allocated ? word | mask : word & ~mask);
+	}
+
+	@Override
+	void fill_words(int from, int to, long word) {
+		for (int i = from; i < to; i++)
+			flags[i >>> WORDS_SHIFT].put(i & WORDS_MASK, word);
+	}
+
+	@Override
+	void order(ByteOrder order) {
+		super.order(order);
+		for (ByteBuffer block : blocks)
+			block.order(order);
+	}
+
+	@Override
+	byte get_(long ptr) {
+		return blocks[(int) (ptr >>> BLOCK_SHIFT)].get((int) ptr & BLOCK_MASK);
+	}
+
+	@Override
+	void put_(long ptr, byte value) {
+		blocks[(int) (ptr >>> BLOCK_SHIFT)].put((int) ptr & BLOCK_MASK, value);
+	}
+
+	@Override
+	short get_short(long ptr) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		return (off <= block.limit() - Short.BYTES) ? block.getShort(off) : (short) get_bits(ptr, Short.BYTES);
+	}
+
+	@Override
+	void put_short(long ptr, short value) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		if (off <= block.limit() - Short.BYTES) block.putShort(off, value);
+		else put_bits(ptr, Short.BYTES, value);
+	}
+
+	@Override
+	char get_char(long ptr) {
+		return (char) get_short(ptr);
+	}
+
+	@Override
+	void put_char(long ptr, char value) {
+		put_short(ptr, (short) value);
+	}
+
+	@Override
+	int get_int(long ptr) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		return (off <= block.limit() - Integer.BYTES) ? block.getInt(off) : (int) get_bits(ptr, Integer.BYTES);
+	}
+
+	@Override
+	void put_int(long ptr, int value) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		if (off <= block.limit() - Integer.BYTES) block.putInt(off, value);
+		else put_bits(ptr, Integer.BYTES, value);
+	}
+
+	@Override
+	long get_long(long ptr) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		return (off <= block.limit() - Long.BYTES) ? block.getLong(off) : get_bits(ptr, Long.BYTES);
+	}
+
+	@Override
+	void put_long(long ptr, long value) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int off = (int) ptr & BLOCK_MASK;
+		if (off <= block.limit() - Long.BYTES) block.putLong(off, value);
+		else put_bits(ptr, Long.BYTES, value);
+	}
+
+	@Override
+	void get_(long ptr, byte[] dst, int off, int len) {
+		while (len > 0) { /* one bulk copy per block crossed */
+			ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+			int at = (int) ptr & BLOCK_MASK, n = Math.min(len, block.limit() - at);
+			block.get(at, dst, off, n);
+			ptr += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	void put_(long ptr, byte[] src, int off, int len) {
+		while (len > 0) { /* one bulk copy per block crossed */
+			ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+			int at = (int) ptr & BLOCK_MASK, n = Math.min(len, block.limit() - at);
+			block.put(at, src, off, n);
+			ptr += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	ByteBuffer view_(long ptr, long size) {
+		ByteBuffer block = blocks[(int) (ptr >>> BLOCK_SHIFT)];
+		int at = (int) ptr & BLOCK_MASK;
+		return block.slice(at, (int) Math.min(size, block.limit() - at)); /* up to the end of the block */
+	}
+
+	@Override
+	void copy_(long src, long dst, long size) {
+		if (dst <= src) { /* front to back, a block's piece at a time */
+			for (long done = 0; done < size;) {
+				long s = src + done, d = dst + done;
+				int n = (int) Math.min(size - done, Math.min(BLOCK_MASK + 1 - (s & BLOCK_MASK), BLOCK_MASK + 1 - (d & BLOCK_MASK)));
+				move_(s, d, n);
+				done += n;
+			}
+		} else { /* back to front, chunks ending where the previous one started */
+			for (long left = size; left > 0;) {
+				long s = src + left, d = dst + left; /* the chunk's ends (exclusive) */
+				int n = (int) Math.min(Math.min(left, COPY_SIZE), Math.min(((s - 1) & BLOCK_MASK) + 1, ((d - 1) & BLOCK_MASK) + 1));
+				move_(s - n, d - n, n);
+				left -= n;
+			}
+		}
+	}
+
+	/**
+	 * Copies a chunk lying within a single block on either side, straight between the blocks' storage
+	 * @param src The pointer of the first byte to copy
+	 * @param dst The pointer of the first byte to overwrite
+	 * @param n The number of bytes to copy
+	 */
+	private void move_(long src, long dst, int n) {
+		blocks[(int) (dst >>> BLOCK_SHIFT)].put((int) dst & BLOCK_MASK, blocks[(int) (src >>> BLOCK_SHIFT)], (int) src & BLOCK_MASK, n);
+	}
+
+	@Override
+	void fill_(long ptr, long size, byte value) {
+		long pattern = (value & 0xffL) * 0x0101010101010101L; /* the byte repeated 8 times */
+		long end = ptr + size;
+		for (; ptr < end && (ptr & 7) != 0; ptr++) /* up to the first 8-byte boundary */
+			put_(ptr, value);
+		for (; ptr + Long.BYTES <= end; ptr += Long.BYTES) /* 8 bytes at a time, never crossing a block */
+			blocks[(int) (ptr >>> BLOCK_SHIFT)].putLong((int) ptr & BLOCK_MASK, pattern);
+		for (; ptr < end; ptr++)
+			put_(ptr, value);
+	}
+
+	/**
+	 * Reads a value straddling two blocks, a byte at a time
+	 * @param ptr The pointer of the value's first byte
+	 * @param n The value's size in bytes
+	 * @return The value's bits
+	 */
+	private long get_bits(long ptr, int n) {
+		long bits = 0;
+		for (int i = 0; i < n; i++)
+			bits = bits << 8 | (get_(ptr + i) & 0xff);
+		return little ? Long.reverseBytes(bits) >>> (64 - 8 * n) : bits;
+	}
+
+	/**
+	 * Writes a value straddling two blocks, a byte at a time
+	 * @param ptr The pointer of the value's first byte
+	 * @param n The value's size in bytes
+	 * @param bits The value's bits
+	 */
+	private void put_bits(long ptr, int n, long bits) {
+		if (little) bits = Long.reverseBytes(bits) >>> (64 - 8 * n);
+		for (int i = n - 1; i >= 0; i--, bits >>>= 8)
+			put_(ptr + i, (byte) bits);
+	}
+
+}
@@ -0,0 +1,260 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a memory whose data and allocation flags are mapped from a file<br>
+ * Writes go straight to the page cache and reopening the file gives the memory back as it was, without rebuilding
+ * it<br>
+ * <b>File layout :</b><br>
+ * 
+ * <pre>
+ * [header : magic, size, byte order][allocation flags][data]
+ * </pre>
+ * 
+ * each section starting on a page boundary. The byte order set with {@link Memory#m_order} is kept in the header, so
+ * that reopening the file reads its values back the way they were written
+ * @see #force()
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MappedMemory extends DirectMemory {
+
+	/**
+	 * The file's magic number ("OCTOMEM1")
+	 */
+	static final long MAGIC = 0x4f43544f4d454d31L;
+
+	/**
+	 * The sections' alignment (and the header's size)
+	 */
+	static final int PAGE = 4096;
+
+	/**
+	 * The header's size in bytes : magic, size and byte order
+	 */
+	static final int HEADER_SIZE = 3 * Long.BYTES;
+
+	/**
+	 * The header's byte order value of a little-endian memory (0, as files written before it was recorded, is big-endian)
+	 */
+	static final long LITTLE = 1;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer[] maps;
+
+	/**
+	 * Maps an existing memory file
+	 * @param file The memory file
+	 * @throws IOException if the file can't be mapped or isn't a memory file
+	 */
+	public MappedMemory(File file) throws IOException {
+		this(file, size_of(file));
+	}
+
+	/**
+	 * Maps a size-byte memory file, creating it if it doesn't exist
+	 * @param file The memory file
+	 * @param size The size of the Memory in bytes
+	 * @throws IOException if the file can't be mapped or holds a memory of another size
+	 * @throws IllegalArgumentException
+	 */
+	public MappedMemory(File file, long size) throws IOException {
+		this(open(file, check(size)), size);
+	}
+
+	private MappedMemory(FileChannel channel, long size) throws IOException {
+		this(channel, size, map(channel, size));
+	}
+
+	private MappedMemory(FileChannel channel, long size, MappedByteBuffer[] maps) throws IOException {
+		super(size, data_blocks(channel, size), flag_blocks(maps));
+		this.channel = channel;
+		this.maps = maps;
+		channel.force(true); /* the header, and the file's length as mapping grew it */
+		super.order((header_(channel).getLong(2 * Long.BYTES) == LITTLE) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		invalidate(); /* the free extents are rebuilt from the mapped flags */
+	}
+
+	/**
+	 * Sets the byte order, writing it to the file's header at once
+	 * @throws UncheckedIOException if the header can't be written
+	 */
+	@Override
+	void order(ByteOrder order) {
+		super.order(order);
+		ByteBuffer value = ByteBuffer.allocate(Long.BYTES).putLong(little ? LITTLE : 0);
+		value.flip();
+		try {
+			while (value.hasRemaining())
+				channel.write(value, 2 * Long.BYTES + value.position());
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes every dirty page of the memory (data and allocation flags) and the file's header and metadata to the file
+	 * @throws UncheckedIOException if the file can't be flushed
+	 */
+	public void force() {
+		for (MappedByteBuffer map : maps)
+			map.force();
+		for (ByteBuffer block : blocks)
+			((MappedByteBuffer) block).force();
+		try {
+			channel.force(true); /* the header is written through the channel, not mapped */
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes a range of the memory (data and allocation flags) to the file
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes to flush
+	 */
+	public void force(long ptr, long size) {
+		if (size <= 0) return;
+		long end = ptr + size;
+		while (ptr < end) { /* the data, one block at a time */
+			int b = (int) (ptr >>> BLOCK_SHIFT), at = (int) ptr & BLOCK_MASK;
+			int n = (int) Math.min(end - ptr, blocks[b].limit() - at);
+			((MappedByteBuffer) blocks[b]).force(at, n);
+			ptr += n;
+		}
+		int first = (int) ((end - size) >>> 6), last = (int) ((end - 1) >>> 6);
+		for (int i = first; i <= last;) { /* then the flags words covering it */
+			int b = i >>> WORDS_SHIFT, at = i & WORDS_MASK;
+			int n = Math.min(last - i + 1, (maps[b].limit() >>> 3) - at);
+			maps[b].force(at * Long.BYTES, n * Long.BYTES);
+			i += n;
+		}
+	}
+
+	/**
+	 * Flushes the memory and closes its file<br>
+	 * The memory mustn't be used afterwards
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+
+	/**
+	 * Reads the size of the memory held in a memory file
+	 * @param file The memory file
+	 * @return The size of the memory in bytes
+	 * @throws IOException if the file isn't a memory file
+	 */
+	static long size_of(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = header_(channel);
+			if (header == null) throw new IOException(file + " isn't a memory file");
+			return header.getLong(Long.BYTES);
+		}
+	}
+
+	/**
+	 * Reads a memory file's header
+	 * @param channel The file's channel
+	 * @return The header<br>
+	 *         <b>null</b> if the file isn't a memory file
+	 * @throws IOException
+	 */
+	private static ByteBuffer header_(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header, header.position()) != -1)
+			continue;
+		return (header.hasRemaining() || header.getLong(0) != MAGIC) ? null : header;
+	}
+
+	/**
+	 * Opens (or creates) a memory file, checking its header
+	 * @param file The memory file
+	 * @param size The size of the memory in bytes
+	 * @return The file's channel
+	 * @throws IOException
+	 */
+	private static FileChannel open(File file, long size) throws IOException {
+		boolean exists = file.length() > 0;
+		if (exists && size_of(file) != size) throw new IOException(file + " holds a memory of " + size_of(file) + " bytes, not " + size);
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (!exists) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putLong(MAGIC).putLong(size).putLong(0); /* big-endian */
+			header.flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		}
+		return channel;
+	}
+
+	/**
+	 * @param size The size of the memory in bytes
+	 * @return The offset of the data section in the file
+	 */
+	private static long data_offset(long size) {
+		long flags = ((size + 63) >>> 6) * Long.BYTES;
+		return PAGE + (flags + PAGE - 1) / PAGE * PAGE;
+	}
+
+	/**
+	 * Maps the allocation flags section, one 1GB block at a time
+	 */
+	private static MappedByteBuffer[] map(FileChannel channel, long size) throws IOException {
+		int words = (int) ((size + 63) >>> 6);
+		MappedByteBuffer[] maps = new MappedByteBuffer[(words + WORDS_MASK) >>> WORDS_SHIFT];
+		for (int b = 0; b < maps.length; b++)
+			maps[b] = channel.map(FileChannel.MapMode.READ_WRITE, PAGE + ((long) b << WORDS_SHIFT) * Long.BYTES, (long) Math.min(words - (b << WORDS_SHIFT), 1 << WORDS_SHIFT) * Long.BYTES);
+		return maps;
+	}
+
+	private static LongBuffer[] flag_blocks(MappedByteBuffer[] maps) {
+		LongBuffer[] flags = new LongBuffer[maps.length];
+		for (int b = 0; b < maps.length; b++)
+			flags[b] = maps[b].asLongBuffer();
+		return flags;
+	}
+
+	/**
+	 * Maps the data section, one 1GB block at a time (the file grows to fit it)
+	 */
+	private static ByteBuffer[] data_blocks(FileChannel channel, long size) throws IOException {
+		long offset = data_offset(size);
+		ByteBuffer[] blocks = new ByteBuffer[(int) ((size + BLOCK_MASK) >>> BLOCK_SHIFT)];
+		for (int b = 0; b < blocks.length; b++)
+			blocks[b] = channel.map(FileChannel.MapMode.READ_WRITE, offset + ((long) b << BLOCK_SHIFT), Math.min(size - ((long) b << BLOCK_SHIFT), 1L << BLOCK_SHIFT));
+		return blocks;
+	}
+
+}
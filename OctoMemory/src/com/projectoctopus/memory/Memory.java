@@ -19,6 +19,13 @@
  */
 package com.projectoctopus.memory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
 import com.projectoctopus.memory.exception.MemoryException;
 
 /**
@@ -47,22 +54,49 @@ public class Memory {
 	 * <pre>
 	 * memory.data[ptr]
 	 * </pre>
+	 * 
+	 * <b>null</b> for memories whose data isn't held on the heap (see {@link DirectMemory})
 	 */
 	public byte[] data;
 
 	/**
-	 * The memory's data allocation flags (as a bool array)<br>
+	 * The memory's data allocation flags (as a bitmap, 64 flags per long)<br>
 	 * <b>Accessing a value :</b><br>
 	 * 
 	 * <pre>
-	 * memory.alloc_f[ptr]
+	 * (memory.alloc_f[ptr &gt;&gt;&gt; 6] &amp; (1L &lt;&lt; ptr)) != 0
 	 * </pre>
 	 * 
 	 * <b>Values : </b><br>
-	 * - true if <code>data[ptr]</code> is allocated<br>
-	 * - false otherwise
+	 * - 1 if <code>data[ptr]</code> is allocated<br>
+	 * - 0 otherwise<br>
+	 * <b>null</b> for memories whose data isn't held on the heap (see {@link DirectMemory})
+	 * @see #alloc_(Memory, long)
+	 * @see #m_flag(Memory, long, long, boolean)
+	 */
+	public long[] alloc_f;
+
+	/**
+	 * The memory's free extents index, kept up to date by {@link #m_alloc} and {@link #m_free}
 	 */
-	public boolean[] alloc_f;
+	final MemoryAllocator allocator;
+
+	/**
+	 * The memory's allocation statistics, see {@link #m_stats(Memory)}
+	 */
+	final MemoryStats stats = new MemoryStats(this);
+
+	/**
+	 * The journal recording the memory's mutations, <b>null</b> if not journaled (see {@link MemoryJournal})
+	 */
+	MemoryJournal journal;
+
+	/**
+	 * The byte order of the memory's multi-byte values, big-endian unless set with {@link #m_order(Memory, ByteOrder)}
+	 */
+	ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	boolean little;	/* whether order is little-endian, tested upon every access */
 
 	/**
 	 * Initializes a new size-byte Memory
@@ -73,17 +107,41 @@ public class Memory {
 		/* Is the size in bounds of MIN_SIZE, MAX_SIZE */
 		if (MIN_SIZE > size || size > MAX_SIZE) throw new IllegalArgumentException("Memory size must be between : " + MIN_SIZE + " bytes and " + MAX_SIZE + " bytes.");
 		data = new byte[size]; /* Initializes the memory data array */
-		alloc_f = new boolean[size]; /* Initializes the memory's data allocation flags (false default) */
+		alloc_f = new long[(size + 63) >>> 6]; /* Initializes the memory's data allocation flags (0 default) */
+		allocator = new MemoryAllocator(size); /* Initializes the free extents index (one extent spanning the whole memory) */
+	}
+
+	/**
+	 * Initializes a Memory over an existing data array
+	 * @param data The memory's data, shared
+	 */
+	Memory(byte[] data) {
+		this.data = data;
+		alloc_f = new long[(data.length + 63) >>> 6];
+		allocator = new MemoryAllocator(data.length);
 	}
 
 	/**
-	 * Prints the content of the memory as a block formatted with lsize-long lines
+	 * Initializes a new size-byte Memory whose data and allocation flags are held by the subclass
+	 * @param size The size of the new Memory in bytes
+	 */
+	Memory(long size) {
+		allocator = new MemoryAllocator(size);
+	}
+
+	/**
+	 * Prints the content of the memory as a hex dump with lsize-long lines, folding runs of zeros (see
+	 * {@link MemoryDump})
 	 * @param memory The memory to print the content of
 	 * @param lsize The lines length (in bytes per line)
 	 */
 	public static void m_print(Memory memory, int lsize) {
-		for (int ptr = 1; ptr < size_(memory) + 1; ptr++) /* loops through every bytes stored in memory */
-			System.out.printf("0x%x " + ((ptr % lsize == 0) ? "\n" : ""), memory.data[ptr - 1]); /* prints the given byte at index ptr in data[] */
+		try {
+			new MemoryDump(lsize, true).dump(memory, 0, capacity_(memory), (Appendable) System.out);
+		} catch (IOException e) { /* PrintStream never throws */
+			throw new UncheckedIOException(e);
+		}
+		System.out.flush();
 	}
 
 	/**
@@ -95,16 +153,17 @@ public class Memory {
 	 */
 	public static int m_swap(Memory memory, int ptr1, int ptr2) {
 		/* temp var */
-		byte tmp = memory.data[ptr2];
-		boolean tmp_f = memory.alloc_f[ptr2];
+		byte tmp = memory.get_(ptr2);
+		boolean tmp_f = alloc_(memory, ptr2);
 
 		/* puts the first values into the second ones */
-		memory.data[ptr2] = memory.data[ptr1];
-		memory.alloc_f[ptr2] = memory.alloc_f[ptr1];
+		memory.put_(ptr2, memory.get_(ptr1));
+		m_flag(memory, ptr2, 1, alloc_(memory, ptr1));
 
 		/* puts the temp values (second) into the first one */
-		memory.data[ptr1] = tmp;
-		memory.alloc_f[ptr1] = tmp_f;
+		memory.put_(ptr1, tmp);
+		m_flag(memory, ptr1, 1, tmp_f);
+		memory.invalidate(); /* the free extents moved */
 		return 0;
 	}
 
@@ -116,32 +175,95 @@ public class Memory {
 	 *         <b>-1</b> otherwise
 	 */
 	public static int m_push(Memory memory, int ptr) {
-		for (int i = ptr; i < size_(memory) - 1; i++) /* loops through memory addresses after ptr */
-			if (!memory.alloc_f[i] && memory.alloc_f[i + 1]) return m_swap(memory, i, i + 1); /* swaps the first empty index with the last non-empty one */
-		return -1; /* Got no indexes to swap (memory already pushed or full) */
+		long free = next_free(memory, ptr, size_(memory)); /* the first empty index */
+		if (free == -1) return -1; /* memory full past ptr */
+		long used = next_alloc(memory, free, size_(memory)); /* the first non-empty index after it */
+		if (used == -1) return -1; /* Got no indexes to swap (memory already pushed) */
+		return m_swap(memory, (int) used - 1, (int) used); /* swaps the last empty index with the first non-empty one */
 	}
 
 	/**
 	 * Pushes the memory until its fully pushed / arranged
 	 * @param memory The memory to arrange
 	 * @param ptr The pointer to which to start
+	 * @see #m_compact(Memory, long)
 	 */
 	public static void m_arrange(Memory memory, int ptr) {
-		while (m_push(memory, ptr) != -1) /* keep pushing till no more pointers to push */
-			continue; /* go ahead ? */
+		m_compact(memory, ptr); /* same outcome as pushing till no more pointers to push, in a single pass */
 	}
 
 	/**
-	 * Allocates size bytes in the memory (sets size bytes to allocated and 0x00)
+	 * Slides every allocated run of bytes past ptr down over the free bytes, in a single pass<br>
+	 * Runs keep their order and are moved with bulk copies, so that the memory's free space past ptr ends up as one
+	 * extent at its end
+	 * @param memory The memory to compact
+	 * @param ptr The pointer to which to start
+	 * @return The moved runs, to fix up the pointers into them
+	 */
+	public static MemoryRelocation m_compact(Memory memory, long ptr) {
+		MemoryRelocation moved = new MemoryRelocation();
+		long size = memory.capacity();
+		long hole = next_free(memory, ptr, size); /* the bytes before the first hole stay put */
+		if (hole == -1) return moved;
+		long dst = hole, src = hole, end = hole;
+		while ((src = next_alloc(memory, src, size)) != -1) { /* loops through the allocated runs */
+			end = next_free(memory, src, size);
+			if (end == -1) end = size;
+			memory.copy_(src, dst, end - src); /* slides the whole run down */
+			moved.add(src, dst, end - src);
+			dst += end - src;
+			src = end;
+		}
+		m_flag(memory, hole, dst - hole, true); /* the runs now fill [hole, dst) */
+		m_flag(memory, dst, end - dst, false); /* and left [dst, end) free */
+		memory.fill_(dst, end - dst, (byte) 0x0);
+		memory.invalidate(); /* the free extents moved */
+		return moved;
+	}
+
+	/**
+	 * Allocates size bytes in the memory (sets size bytes to allocated and 0x00)<br>
+	 * The range is picked from the free extents index in logarithmic time, without scanning the memory
 	 * @param memory The memory to allocate into
 	 * @param size The size (in bytes) to allocate
-	 * @return -1
-	 * @throws MemoryException if size to allocate is greater than the memory's capacity
+	 * @return A pointer to the first allocated byte
+	 * @throws MemoryException if no free range of size bytes is available
+	 * @throws IllegalArgumentException if size isn't positive
+	 * @throws ArithmeticException if the pointer doesn't fit an int (use {@link #m_alloc(Memory, long)} past 2GB)
 	 */
 	public static int m_alloc(Memory memory, int size) throws MemoryException {
-		if (size > free_(memory)) throw new MemoryException("Not enough memory available to store " + size + " new bytes");
-		// TODO implementation
-		return -1;
+		return Math.toIntExact(m_alloc(memory, (long) size));
+	}
+
+	/**
+	 * Allocates size bytes in the memory (sets size bytes to allocated and 0x00)
+	 * @param memory The memory to allocate into
+	 * @param size The size (in bytes) to allocate
+	 * @return A pointer to the first allocated byte
+	 * @throws MemoryException if no free range of size bytes is available
+	 * @throws IllegalArgumentException if size isn't positive
+	 * @see #m_alloc(Memory, int)
+	 */
+	public static long m_alloc(Memory memory, long size) throws MemoryException {
+		if (size <= 0) throw new IllegalArgumentException("Allocation size must be positive");
+		long ptr = memory.allocate(size); /* takes a fitting range out of the free extents */
+		if (ptr == -1) {
+			memory.stats.fail();
+			throw new MemoryException("Not enough memory available to store " + size + " new bytes");
+		}
+		memory.stats.alloc(size);
+		memory.fill_(ptr, size, (byte) 0x0); /* resets the range's bytes, already flagged allocated */
+		if (memory.journal != null) memory.journal.allocated(ptr, size); /* journaled without its zeros */
+		return ptr;
+	}
+
+	/**
+	 * Gives the allocation statistics of a memory, counted as it goes so that reading them is cheap
+	 * @param memory The memory to operate with
+	 * @return The memory's statistics, to snapshot or register as an MBean
+	 */
+	public static MemoryStats m_stats(Memory memory) {
+		return memory.stats;
 	}
 
 	/**
@@ -152,8 +274,10 @@ public class Memory {
 	 */
 	public static void m_free(Memory memory, int ptr) {
 		if (ptr > size_(memory)) throw new IndexOutOfBoundsException();
-		memory.data[ptr] = 0x0; /* resets the ptr's byte */
-		memory.alloc_f[ptr] = false; /* sets the ptr's allocation flag to false (free) */
+		memory.put_(ptr, (byte) 0x0); /* resets the ptr's byte */
+		memory.release(ptr, 1); /* sets the ptr's allocation flag to 0 (free) and gives the byte back */
+		journal_free_(memory, ptr, 1);
+		memory.stats.free();
 	}
 
 	/**
@@ -163,9 +287,141 @@ public class Memory {
 	 * @param size The number of bytes to free
 	 */
 	public static void m_free(Memory memory, int start, int size) {
-		if (start + size > size_(memory)) throw new IllegalArgumentException("Start index + size must be less than the memory's size");
-		for (int ptr = start; ptr < start + size; ptr++) /* loops through all bytes to free */
-			m_free(memory, ptr); /* frees the current byte */
+		m_free(memory, (long) start, (long) size);
+	}
+
+	/**
+	 * Frees a range of pointers in the memory
+	 * @param memory The memory to operate with
+	 * @param start The starting pointer (inclusive)
+	 * @param size The number of bytes to free
+	 */
+	public static void m_free(Memory memory, long start, long size) {
+		if (start + size > capacity_(memory)) throw new IllegalArgumentException("Start index + size must be less than the memory's size");
+		memory.fill_(start, size, (byte) 0x0); /* resets the range's bytes */
+		memory.release(start, size); /* sets the range's allocation flags to 0 (free), gives it back as a single extent */
+		journal_free_(memory, start, size);
+		memory.stats.free();
+	}
+
+	/**
+	 * Sets a range of bytes to a value, flagging them as allocated
+	 * @param memory The memory to operate with
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The number of bytes to set
+	 * @param value The bytes' new value
+	 */
+	public static void m_memset(Memory memory, long ptr, long size, byte value) {
+		range_(memory, ptr, size);
+		memory.fill_(ptr, size, value); /* Arrays.fill, a page or block at a time */
+		m_flag(memory, ptr, size, true); /* whole flag words at once */
+		memory.claim(ptr, size); /* out of the free extents, now that it's flagged */
+	}
+
+	/**
+	 * Copies a range of bytes to another within a memory, flagging the copy as allocated<br>
+	 * The ranges may overlap, making it the same as {@link #m_memmove}
+	 * @param memory The memory to operate with
+	 * @param src The pointer of the first byte to copy
+	 * @param dst The pointer of the first byte to overwrite
+	 * @param size The number of bytes to copy
+	 */
+	public static void m_memcpy(Memory memory, long src, long dst, long size) {
+		m_memmove(memory, src, dst, size);
+	}
+
+	/**
+	 * Copies a range of bytes from a memory to another, flagging the copy as allocated<br>
+	 * The bytes are moved a contiguous piece at a time, straight between both memories' storage
+	 * @param source The memory to copy from
+	 * @param src The pointer of the first byte to copy
+	 * @param target The memory to copy to
+	 * @param dst The pointer of the first byte to overwrite
+	 * @param size The number of bytes to copy
+	 */
+	public static void m_memcpy(Memory source, long src, Memory target, long dst, long size) {
+		if (source == target) {
+			m_memmove(source, src, dst, size);
+			return;
+		}
+		range_(source, src, size);
+		range_(target, dst, size);
+		if (source.data != null && target.data != null) System.arraycopy(source.data, (int) src, target.data, (int) dst, (int) size);
+		else for (long done = 0; done < size;) {
+			ByteBuffer from = source.peek_(src + done, size - done);
+			ByteBuffer to = target.view_(dst + done, from.remaining()); /* the shorter of both pieces */
+			from.limit(to.remaining());
+			done += to.remaining();
+			to.put(from);
+		}
+		m_flag(target, dst, size, true);
+		target.claim(dst, size); /* out of the free extents, now that it's flagged */
+	}
+
+	/**
+	 * Copies a range of bytes to another, possibly overlapping, within a memory, flagging the copy as allocated
+	 * @param memory The memory to operate with
+	 * @param src The pointer of the first byte to copy
+	 * @param dst The pointer of the first byte to overwrite
+	 * @param size The number of bytes to copy
+	 */
+	public static void m_memmove(Memory memory, long src, long dst, long size) {
+		range_(memory, src, size);
+		range_(memory, dst, size);
+		memory.copy_(src, dst, size); /* System.arraycopy, in the direction overlapping ranges need */
+		m_flag(memory, dst, size, true);
+		memory.claim(dst, size); /* out of the free extents, now that it's flagged */
+	}
+
+	/**
+	 * Compares two ranges of bytes within a memory, as unsigned bytes
+	 * @param memory The memory to operate with
+	 * @param ptr1 The pointer of the first range
+	 * @param ptr2 The pointer of the second range
+	 * @param size The number of bytes to compare
+	 * @return 0 if the ranges are equal<br>
+	 *         A negative value if the first differing byte is lower in the first range<br>
+	 *         A positive value otherwise
+	 */
+	public static int m_memcmp(Memory memory, long ptr1, long ptr2, long size) {
+		return m_memcmp(memory, ptr1, memory, ptr2, size);
+	}
+
+	/**
+	 * Compares two ranges of bytes, as unsigned bytes, a contiguous piece at a time with vectorized mismatches
+	 * @param a The first memory
+	 * @param ptr1 The pointer of the range in the first memory
+	 * @param b The second memory
+	 * @param ptr2 The pointer of the range in the second memory
+	 * @param size The number of bytes to compare
+	 * @return 0 if the ranges are equal<br>
+	 *         A negative value if the first differing byte is lower in the first range<br>
+	 *         A positive value otherwise
+	 */
+	public static int m_memcmp(Memory a, long ptr1, Memory b, long ptr2, long size) {
+		range_(a, ptr1, size);
+		range_(b, ptr2, size);
+		if (a.data != null && b.data != null) {
+			int i = Arrays.mismatch(a.data, (int) ptr1, (int) (ptr1 + size), b.data, (int) ptr2, (int) (ptr2 + size));
+			return (i == -1) ? 0 : (a.data[(int) ptr1 + i] & 0xff) - (b.data[(int) ptr2 + i] & 0xff);
+		}
+		for (long done = 0; done < size;) {
+			ByteBuffer x = a.peek_(ptr1 + done, size - done);
+			ByteBuffer y = b.peek_(ptr2 + done, x.remaining());
+			x.limit(y.remaining());
+			int i = x.mismatch(y);
+			if (i != -1) return (x.get(i) & 0xff) - (y.get(i) & 0xff);
+			done += y.remaining();
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks a range of pointers lies in a memory
+	 * @throws IllegalArgumentException if it doesn't
+	 */
+	private static void range_(Memory memory, long ptr, long size) {
+		if (ptr < 0 || size < 0 || ptr + size > memory.capacity()) throw new IllegalArgumentException("Pointer + size must be less than the memory's size");
 	}
 
 	/**
@@ -175,18 +431,218 @@ public class Memory {
 	 *         <b>-1</b> if couldn't find any
 	 */
 	public static int first_free(Memory memory) {
-		for (int ptr = 0; ptr < size_(memory); ptr++) /* loops through all bytes in memory */
-			if (!memory.alloc_f[ptr]) return ptr; /* if free -> return current pointer */
-		return -1; /* if no free pointer found */
+		return (int) next_free(memory, 0, size_(memory));
+	}
+
+	/**
+	 * Gives a pointer to the first free byte in the given range
+	 * @param memory The memory to scan
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @return A pointer to the first free pointer<br>
+	 *         <b>-1</b> if couldn't find any
+	 */
+	public static long next_free(Memory memory, long from, long to) {
+		if (from >= to) return -1;
+		int i = (int) (from >>> 6), last = (int) ((to - 1) >>> 6);
+		long word = ~memory.word_(i) & (-1L << from); /* free flags of the first word, from 'from' on */
+		while (word == 0) { /* skips fully allocated words */
+			if (++i > last) return -1;
+			word = ~memory.word_(i);
+		}
+		long ptr = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+		return (ptr < to) ? ptr : -1; /* if free -> return first free pointer */
+	}
+
+	/**
+	 * Gives a pointer to the first allocated byte in the given range
+	 * @param memory The memory to scan
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @return A pointer to the first allocated pointer<br>
+	 *         <b>-1</b> if couldn't find any
+	 */
+	public static long next_alloc(Memory memory, long from, long to) {
+		if (from >= to) return -1;
+		int i = (int) (from >>> 6), last = (int) ((to - 1) >>> 6);
+		long word = memory.word_(i) & (-1L << from); /* allocated flags of the first word, from 'from' on */
+		while (word == 0) { /* skips fully free words */
+			if (++i > last) return -1;
+			word = memory.word_(i);
+		}
+		long ptr = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+		return (ptr < to) ? ptr : -1; /* if allocated -> return first allocated pointer */
+	}
+
+	/**
+	 * Tells whether a byte of the given memory is allocated
+	 * @param memory The memory to operate with
+	 * @param ptr A pointer to the byte
+	 * @return <b>true</b> if the byte is allocated<br>
+	 *         <b>false</b> otherwise
+	 */
+	public static boolean alloc_(Memory memory, long ptr) {
+		return (memory.word_((int) (ptr >>> 6)) & (1L << ptr)) != 0;
+	}
+
+	/**
+	 * Sets the allocation flags of a range of pointers, a whole word at a time<br>
+	 * A journaled memory records the range, with its bytes if allocated (see {@link MemoryJournal})
+	 * @param memory The memory to operate with
+	 * @param start The starting pointer (inclusive)
+	 * @param size The number of flags to set
+	 * @param allocated The flags' new value
+	 */
+	public static void m_flag(Memory memory, long start, long size, boolean allocated) {
+		flag_range(memory, start, size, allocated);
+		if (memory.journal != null && size > 0) memory.journal.flagged(start, size, allocated);
+	}
+
+	/**
+	 * Records a range written in place, without flagging it, in the memory's journal if it has one
+	 * @param memory The memory to operate with
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes written
+	 */
+	static void journal_(Memory memory, long ptr, long size) {
+		if (memory.journal != null && size > 0) memory.journal.record(ptr, size);
+	}
+
+	/**
+	 * Records a range freed through {@link #release(long, long)} in the memory's journal if it has one
+	 * @param memory The memory to operate with
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes freed
+	 */
+	static void journal_free_(Memory memory, long ptr, long size) {
+		if (memory.journal != null && size > 0) memory.journal.flagged(ptr, size, false);
+	}
+
+	/**
+	 * Sets the allocation flags of a range of pointers, without journaling them
+	 * @param memory The memory to operate with
+	 * @param start The starting pointer (inclusive)
+	 * @param size The number of flags to set
+	 * @param allocated The flags' new value
+	 */
+	static void flag_range(Memory memory, long start, long size, boolean allocated) {
+		if (size <= 0) return;
+		long end = start + size - 1; /* last flag (inclusive) */
+		int first = (int) (start >>> 6), last = (int) (end >>> 6);
+		long head = -1L << start; /* the range's bits in the first word */
+		long tail = -1L >>> (63 - (end & 63)); /* the range's bits in the last word */
+		if (first == last) head &= tail;
+		memory.flag_(first, head, allocated);
+		if (first == last) return;
+		memory.fill_words(first + 1, last, allocated ? -1L : 0L); /* whole words in between */
+		memory.flag_(last, tail, allocated);
+	}
+
+	/**
+	 * Sets the byte order of the memory's multi-byte values, read and written by {@link MemoryReader},
+	 * {@link MemoryWriter} and everything built on them<br>
+	 * The bytes already written aren't converted. With {@link ByteOrder#nativeOrder()}, values are read and written
+	 * without swapping, and bulk array transfers are plain copies
+	 * @param memory The memory to operate with
+	 * @param order The new byte order
+	 */
+	public static void m_order(Memory memory, ByteOrder order) {
+		memory.order(order);
+	}
+
+	/**
+	 * Gives the byte order of the memory's multi-byte values
+	 * @param memory The memory to operate with
+	 * @return The memory's byte order, big-endian by default
+	 */
+	public static ByteOrder order_(Memory memory) {
+		return memory.order;
+	}
+
+	/**
+	 * Gives a buffer sharing the storage of the whole memory, in its byte order
+	 * @param memory The memory to operate with
+	 * @return The buffer, whose position 0 is the memory's pointer 0
+	 * @throws IllegalArgumentException if the memory's storage isn't contiguous (see
+	 *             {@link #as_buffer(Memory, long, int)})
+	 */
+	public static ByteBuffer as_buffer(Memory memory) {
+		return as_buffer(memory, 0, size_(memory));
+	}
+
+	/**
+	 * Gives a buffer sharing the storage of a range of the memory, in its byte order, so that bulk data moves between
+	 * the memory and NIO without any copy<br>
+	 * Bytes written through the buffer aren't flagged as allocated nor journaled. The range has to be contiguous in the
+	 * backend's storage : within a 1GB block of a {@link DirectMemory}, within a page of a {@link PagedMemory} (whose
+	 * buffer stops being shared once the page gets copied, after a snapshot)
+	 * @param memory The memory to operate with
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The range's size in bytes
+	 * @return The buffer, whose position 0 is the byte at ptr
+	 * @throws IllegalArgumentException if the range isn't contiguous
+	 */
+	public static ByteBuffer as_buffer(Memory memory, long ptr, int size) {
+		if (ptr < 0 || size < 0 || ptr + size > memory.capacity()) throw new IndexOutOfBoundsException();
+		ByteBuffer buffer = memory.view_(ptr, size);
+		if (buffer.remaining() != size) throw new IllegalArgumentException("The range isn't contiguous in the memory's storage");
+		return buffer.order(memory.order);
+	}
+
+	/**
+	 * Gives a read-only buffer sharing the storage of a range of the memory, in its byte order<br>
+	 * Unlike {@link #as_buffer(Memory, long, int)}, a {@link PagedMemory} gives it without backing a zero page or copying
+	 * a page shared with a snapshot. The range has to be contiguous in the backend's storage
+	 * @param memory The memory to operate with
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The range's size in bytes
+	 * @return The buffer, whose position 0 is the byte at ptr
+	 * @throws IllegalArgumentException if the range isn't contiguous
+	 */
+	public static ByteBuffer as_read_buffer(Memory memory, long ptr, int size) {
+		if (ptr < 0 || size < 0 || ptr + size > memory.capacity()) throw new IndexOutOfBoundsException();
+		ByteBuffer buffer = memory.peek_(ptr, size);
+		if (buffer.remaining() != size) throw new IllegalArgumentException("The range isn't contiguous in the memory's storage");
+		return buffer.asReadOnlyBuffer().order(memory.order);
+	}
+
+	/**
+	 * Gives a memory sharing the storage of a buffer (from its position to its limit), in the buffer's byte order<br>
+	 * Every byte is flagged as allocated, so that the buffer's content can be read and freed as usual. A heap buffer
+	 * spanning its whole array gives a {@link Memory} over that array, any other buffer a {@link DirectMemory}
+	 * @param buffer The buffer to wrap
+	 * @return The memory
+	 * @throws IllegalArgumentException if the buffer is read-only or too small
+	 */
+	public static Memory wrap(ByteBuffer buffer) {
+		if (buffer.isReadOnly()) throw new IllegalArgumentException("Can't wrap a read-only buffer");
+		ByteBuffer range = buffer.slice();
+		Memory memory;
+		if (range.hasArray() && range.arrayOffset() == 0 && range.remaining() == range.array().length && range.remaining() >= MIN_SIZE && range.remaining() <= MAX_SIZE) memory = new Memory(range.array());
+		else memory = new DirectMemory(range);
+		m_order(memory, buffer.order());
+		flag_range(memory, 0, memory.capacity(), true);
+		memory.invalidate(); /* the free extents come from the flags */
+		return memory;
 	}
 
 	/**
 	 * Gives the size of the given memory in bytes
 	 * @param memory The memory to get the size of
 	 * @return The size of the memory
+	 * @throws ArithmeticException if the memory is larger than 2GB (see {@link #capacity_(Memory)})
 	 */
 	public static int size_(Memory memory) {
-		return memory.data.length;
+		return Math.toIntExact(memory.capacity());
+	}
+
+	/**
+	 * Gives the size of the given memory in bytes, past 2GB
+	 * @param memory The memory to get the size of
+	 * @return The size of the memory
+	 */
+	public static long capacity_(Memory memory) {
+		return memory.capacity();
 	}
 
 	/**
@@ -195,10 +651,19 @@ public class Memory {
 	 * @return The count of free pointers
 	 */
 	public static int free_(Memory memory) {
-		int ptr = 0;
-		for (boolean flag : memory.alloc_f) /* loops through all the allocation flags */
-			if (!flag) ptr++; /* if free */
-		return ptr;
+		return Math.toIntExact(available_(memory));
+	}
+
+	/**
+	 * Gives the free space in the given memory, past 2GB
+	 * @param memory The memory to get the free space of
+	 * @return The count of free pointers
+	 */
+	public static long available_(Memory memory) {
+		long used = 0;
+		for (int i = 0, words = memory.words(); i < words; i++) /* loops through all the allocation flags, 64 at a time */
+			used += Long.bitCount(memory.word_(i)); /* counts the allocated ones */
+		return memory.capacity() - used;
 	}
 
 	/**
@@ -348,10 +813,355 @@ public class Memory {
 	/**
 	 * Gives the size of a given string in memory
 	 * @param str A String
-	 * @return The size of a string
+	 * @return The size of a string, its varint length prefix included
 	 */
 	public static int sizeof_(String str) {
-		return sizeof_(str.toCharArray()); /* the actual size of the byte array */
+		return Math.toIntExact(MemoryUTF8.sizeof_(str)); /* the UTF-8 bytes and their length */
+	}
+
+	/*
+	 * Allocation : a single allocator, overridden by the concurrent memory
+	 * Every call holds the allocator's monitor, so that statistics read from another thread never see it mid-update,
+	 * and a range's flags change along with the free extents, so that a defragmenter never sees a range in between
+	 */
+
+	/**
+	 * Takes a free range out of the allocator, flagging it allocated
+	 * @param size The size (in bytes) to allocate
+	 * @return A pointer to the first byte of the range<br>
+	 *         <b>-1</b> if couldn't find any
+	 */
+	long allocate(long size) {
+		synchronized (allocator) {
+			long ptr = allocator.alloc(this, size);
+			if (ptr != -1) flag_range(this, ptr, size, true);
+			return ptr;
+		}
+	}
+
+	/**
+	 * Flags a range free and gives it back to the allocator
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes freed
+	 */
+	void release(long ptr, long size) {
+		synchronized (allocator) {
+			flag_range(this, ptr, size, false);
+			allocator.free(ptr, size);
+		}
+	}
+
+	/**
+	 * Takes a range out of the allocator, a defragmentation having moved allocated bytes into it
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes taken
+	 */
+	void claim(long ptr, long size) {
+		synchronized (allocator) {
+			allocator.take(ptr, size);
+		}
+	}
+
+	/**
+	 * Tells the allocator its free extents must be rebuilt from the flags
+	 */
+	void invalidate() {
+		synchronized (allocator) {
+			allocator.stale = true;
+		}
+	}
+
+	/**
+	 * @return The total size of the allocator's free extents
+	 */
+	long free_bytes() {
+		synchronized (allocator) {
+			return allocator.available(this);
+		}
+	}
+
+	/**
+	 * @return The size of the allocator's largest free extent
+	 */
+	long largest_free() {
+		synchronized (allocator) {
+			return allocator.largest(this);
+		}
+	}
+
+	/**
+	 * Runs an action holding the allocator's lock, so that no range is allocated or freed meanwhile
+	 * @param action The action
+	 * @return The action's result
+	 */
+	boolean exclusive_(BooleanSupplier action) {
+		synchronized (allocator) {
+			return action.getAsBoolean();
+		}
+	}
+
+	/*
+	 * Storage : the heap memory's implementation, overridden by the other backends
+	 */
+
+	/**
+	 * @return The size of the memory in bytes
+	 */
+	long capacity() {
+		return data.length;
+	}
+
+	/**
+	 * @return The number of allocation flag words
+	 */
+	int words() {
+		return alloc_f.length;
+	}
+
+	/**
+	 * @param i The index of an allocation flag word
+	 * @return The flag word
+	 */
+	long word_(int i) {
+		return alloc_f[i];
+	}
+
+	/**
+	 * Sets or clears some bits of an allocation flag word
+	 * @param i The index of the flag word
+	 * @param mask The bits to set or clear
+	 * @param allocated true to set the bits, false to clear them
+	 */
+	void flag_(int i, long mask, boolean allocated) {
+		alloc_f[i] = allocated ? alloc_f[i] | mask : alloc_f[i] & ~mask;
+	}
+
+	/**
+	 * Overwrites a range of allocation flag words
+	 * @param from The index of the first word (inclusive)
+	 * @param to The index of the last word (exclusive)
+	 * @param word The new words' value
+	 */
+	void fill_words(int from, int to, long word) {
+		Arrays.fill(alloc_f, from, to, word);
+	}
+
+	byte get_(long ptr) {
+		return data[(int) ptr];
+	}
+
+	void put_(long ptr, byte value) {
+		data[(int) ptr] = value;
+	}
+
+	short get_short(long ptr) {
+		return little ? (short) MemoryAccess.SHORT_LE.get(data, (int) ptr) : (short) MemoryAccess.SHORT.get(data, (int) ptr);
+	}
+
+	void put_short(long ptr, short value) {
+		if (little) MemoryAccess.SHORT_LE.set(data, (int) ptr, value);
+		else MemoryAccess.SHORT.set(data, (int) ptr, value);
+	}
+
+	char get_char(long ptr) {
+		return little ? (char) MemoryAccess.CHAR_LE.get(data, (int) ptr) : (char) MemoryAccess.CHAR.get(data, (int) ptr);
+	}
+
+	void put_char(long ptr, char value) {
+		if (little) MemoryAccess.CHAR_LE.set(data, (int) ptr, value);
+		else MemoryAccess.CHAR.set(data, (int) ptr, value);
+	}
+
+	int get_int(long ptr) {
+		return little ? (int) MemoryAccess.INT_LE.get(data, (int) ptr) : (int) MemoryAccess.INT.get(data, (int) ptr);
+	}
+
+	void put_int(long ptr, int value) {
+		if (little) MemoryAccess.INT_LE.set(data, (int) ptr, value);
+		else MemoryAccess.INT.set(data, (int) ptr, value);
+	}
+
+	long get_long(long ptr) {
+		return little ? (long) MemoryAccess.LONG_LE.get(data, (int) ptr) : (long) MemoryAccess.LONG.get(data, (int) ptr);
+	}
+
+	void put_long(long ptr, long value) {
+		if (little) MemoryAccess.LONG_LE.set(data, (int) ptr, value);
+		else MemoryAccess.LONG.set(data, (int) ptr, value);
+	}
+
+	/**
+	 * Copies a range of the memory's bytes into an array
+	 * @param ptr The pointer of the first byte to copy
+	 * @param dst The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of bytes to copy
+	 */
+	void get_(long ptr, byte[] dst, int off, int len) {
+		System.arraycopy(data, (int) ptr, dst, off, len);
+	}
+
+	/**
+	 * Copies an array's bytes into a range of the memory
+	 * @param ptr The pointer of the first byte to overwrite
+	 * @param src The source array
+	 * @param off The offset in the source array
+	 * @param len The number of bytes to copy
+	 */
+	void put_(long ptr, byte[] src, int off, int len) {
+		System.arraycopy(src, off, data, (int) ptr, len);
+	}
+
+	/**
+	 * Gives a buffer sharing the storage of a range of the memory, for bulk transfers<br>
+	 * The buffer may be shorter than asked for if the range isn't contiguous in the backend's storage (its
+	 * <code>remaining()</code> tells how many bytes it covers), and writing it doesn't set any allocation flag
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The range's size in bytes
+	 * @return A big-endian buffer whose position 0 is the byte at ptr
+	 */
+	ByteBuffer view_(long ptr, long size) {
+		return ByteBuffer.wrap(data).slice((int) ptr, (int) size);
+	}
+
+	/**
+	 * Gives a buffer sharing the storage of a range of the memory, only to be read (so that backends never copy
+	 * anything to give it), see {@link #view_(long, long)}
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The range's size in bytes
+	 * @return A big-endian buffer whose position 0 is the byte at ptr
+	 */
+	ByteBuffer peek_(long ptr, long size) {
+		return view_(ptr, size);
+	}
+
+	/**
+	 * Gives an ordered buffer over a range of the memory, for bulk transfers of typed elements
+	 * @param ptr The pointer of the range's first byte
+	 * @param size The range's size in bytes
+	 * @return The buffer<br>
+	 *         <b>null</b> if the range isn't contiguous in the backend's storage
+	 */
+	final ByteBuffer span_(long ptr, long size) {
+		ByteBuffer view = view_(ptr, size);
+		return (view.remaining() == size) ? view.order(order) : null;
+	}
+
+	/**
+	 * Sets the byte order of the memory's multi-byte values
+	 * @param order The new byte order
+	 */
+	void order(ByteOrder order) {
+		this.order = order;
+		little = order == ByteOrder.LITTLE_ENDIAN;
+	}
+
+	/*
+	 * Typed bulk copies, element i being at ptr + i * its size
+	 */
+
+	void get_(long ptr, short[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Short.BYTES);
+		if (span != null) span.asShortBuffer().get(dst, off, len); /* a plain copy in native order */
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = get_short(ptr + (long) i * Short.BYTES);
+	}
+
+	void put_(long ptr, short[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Short.BYTES);
+		if (span != null) span.asShortBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_short(ptr + (long) i * Short.BYTES, src[off + i]);
+	}
+
+	void get_(long ptr, char[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Character.BYTES);
+		if (span != null) span.asCharBuffer().get(dst, off, len);
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = get_char(ptr + (long) i * Character.BYTES);
+	}
+
+	void put_(long ptr, char[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Character.BYTES);
+		if (span != null) span.asCharBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_char(ptr + (long) i * Character.BYTES, src[off + i]);
+	}
+
+	void get_(long ptr, int[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Integer.BYTES);
+		if (span != null) span.asIntBuffer().get(dst, off, len);
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = get_int(ptr + (long) i * Integer.BYTES);
+	}
+
+	void put_(long ptr, int[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Integer.BYTES);
+		if (span != null) span.asIntBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_int(ptr + (long) i * Integer.BYTES, src[off + i]);
+	}
+
+	void get_(long ptr, long[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Long.BYTES);
+		if (span != null) span.asLongBuffer().get(dst, off, len);
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = get_long(ptr + (long) i * Long.BYTES);
+	}
+
+	void put_(long ptr, long[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Long.BYTES);
+		if (span != null) span.asLongBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_long(ptr + (long) i * Long.BYTES, src[off + i]);
+	}
+
+	void get_(long ptr, float[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Float.BYTES);
+		if (span != null) span.asFloatBuffer().get(dst, off, len);
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = Float.intBitsToFloat(get_int(ptr + (long) i * Float.BYTES));
+	}
+
+	void put_(long ptr, float[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Float.BYTES);
+		if (span != null) span.asFloatBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_int(ptr + (long) i * Float.BYTES, Float.floatToRawIntBits(src[off + i]));
+	}
+
+	void get_(long ptr, double[] dst, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Double.BYTES);
+		if (span != null) span.asDoubleBuffer().get(dst, off, len);
+		else for (int i = 0; i < len; i++)
+			dst[off + i] = Double.longBitsToDouble(get_long(ptr + (long) i * Double.BYTES));
+	}
+
+	void put_(long ptr, double[] src, int off, int len) {
+		ByteBuffer span = span_(ptr, (long) len * Double.BYTES);
+		if (span != null) span.asDoubleBuffer().put(src, off, len);
+		else for (int i = 0; i < len; i++)
+			put_long(ptr + (long) i * Double.BYTES, Double.doubleToRawLongBits(src[off + i]));
+	}
+
+	/**
+	 * Copies a range of the memory's bytes to another (possibly overlapping) range
+	 * @param src The pointer of the first byte to copy
+	 * @param dst The pointer of the first byte to overwrite
+	 * @param size The number of bytes to copy
+	 */
+	void copy_(long src, long dst, long size) {
+		System.arraycopy(data, (int) src, data, (int) dst, (int) size);
+	}
+
+	/**
+	 * Overwrites a range of the memory's bytes
+	 * @param ptr The pointer of the first byte to overwrite
+	 * @param size The number of bytes to overwrite
+	 * @param value The bytes' new value
+	 */
+	void fill_(long ptr, long size, byte value) {
+		Arrays.fill(data, (int) ptr, (int) (ptr + size), value);
 	}
 
 }
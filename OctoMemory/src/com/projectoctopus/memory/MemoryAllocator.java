@@ -0,0 +1,295 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of a memory's free extents so that allocating doesn't have to scan its flags<br>
+ * Free extents are indexed by their start pointer (to coalesce them when freeing) and filed into power-of-two size
+ * classes, each one ordered by size (to find the closest fitting one in logarithmic time)
+ * @see Memory#m_alloc(Memory, int)
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+final class MemoryAllocator {
+
+	/**
+	 * The number of size classes, class <code>c</code> holds the extents of <code>2^c</code> to <code>2^(c+1) - 1</code> bytes
+	 */
+	static final int CLASSES = 64;
+
+	/**
+	 * A free extent, ordered by size then start pointer
+	 */
+	private static final class Extent implements Comparable<Extent> {
+
+		final long	ptr;
+		long		size;	/* only ever changed for the probe */
+
+		Extent(long ptr, long size) {
+			this.ptr = ptr;
+			this.size = size;
+		}
+
+		@Override
+		public int compareTo(Extent o) {
+			int c = Long.compare(size, o.size);
+			return (c != 0) ? c : Long.compare(ptr, o.ptr);
+		}
+
+	}
+
+	/**
+	 * The free extents (start pointer -> extent)
+	 */
+	private final TreeMap<Long, Extent> extents = new TreeMap<>();
+
+	/**
+	 * The free extents, by size class
+	 */
+	private final TreeSet<Extent>[] classes;
+
+	/**
+	 * The key looked up in a size class, as lower than any extent of its size
+	 */
+	private final Extent probe = new Extent(-1, 0);
+
+	/**
+	 * The non-empty size classes (bit <code>c</code> is set if <code>classes[c]</code> isn't empty)
+	 */
+	private long mask;
+
+	/**
+	 * The total size of the free extents
+	 */
+	private long free;
+
+	/**
+	 * The range of the memory this allocator hands out (base inclusive, limit exclusive)<br>
+	 * The limit moves up as a growable memory grows, see {@link #extend(long)}
+	 */
+	final long base;
+
+	long limit;
+
+	/**
+	 * True if the memory's flags were moved around behind the allocator's back (see {@link Memory#m_swap})<br>
+	 * The free extents are then rebuilt from the flags upon next allocation
+	 */
+	boolean stale;
+
+	/**
+	 * Initializes the allocator of a size-byte memory (fully free)
+	 * @param size The size of the memory in bytes
+	 */
+	MemoryAllocator(long size) {
+		this(0, size);
+	}
+
+	/**
+	 * Initializes the allocator of a range of a memory (fully free)
+	 * @param base The range's starting pointer (inclusive)
+	 * @param size The range's size in bytes
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	MemoryAllocator(long base, long size) {
+		this.base = base;
+		this.limit = base + size;
+		classes = new TreeSet[CLASSES];
+		for (int c = 0; c < CLASSES; c++)
+			classes[c] = new TreeSet<>();
+		file(base, size);
+	}
+
+	/**
+	 * Finds and takes out a free range of size bytes
+	 * @param memory The memory to allocate into
+	 * @param size The size (in bytes) to allocate
+	 * @return A pointer to the first byte of the range<br>
+	 *         <b>-1</b> if couldn't find any
+	 */
+	long alloc(Memory memory, long size) {
+		if (stale) rebuild(memory);
+		for (;;) {
+			long ptr = fit(size);
+			if (ptr == -1) return -1; /* no extent is large enough */
+			long len = unfile(ptr);
+			if (Memory.next_alloc(memory, ptr, ptr + size) == -1) { /* the range is actually free */
+				if (len > size) file(ptr + size, len - size); /* gives back the remainder */
+				return ptr;
+			}
+			scan(memory, ptr, ptr + len); /* some bytes were written without being allocated, re-files what's left */
+		}
+	}
+
+	/**
+	 * Gives back a range of bytes to the allocator, merging it with the adjacent free extents
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes freed
+	 */
+	void free(long ptr, long size) {
+		long end = ptr + size;
+		Map.Entry<Long, Extent> prev = extents.floorEntry(ptr);
+		if (prev != null && prev.getKey() + prev.getValue().size >= ptr) { /* touches the previous extent */
+			ptr = prev.getKey();
+			end = Math.max(end, ptr + unfile(ptr));
+		}
+		Map.Entry<Long, Extent> next;
+		while ((next = extents.ceilingEntry(ptr)) != null && next.getKey() <= end) /* swallows the following extents */
+			end = Math.max(end, next.getKey() + unfile(next.getKey()));
+		file(ptr, end - ptr);
+	}
+
+	/**
+	 * Takes a range out of the free extents, whichever extents it overlaps, giving back what lies around it
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes taken
+	 */
+	void take(long ptr, long size) {
+		if (stale) return; /* the range is flagged, a rebuild won't file it */
+		long end = ptr + size;
+		Map.Entry<Long, Extent> extent = extents.floorEntry(ptr);
+		if (extent == null || extent.getKey() + extent.getValue().size <= ptr) extent = extents.ceilingEntry(ptr);
+		while (extent != null && extent.getKey() < end) {
+			long start = extent.getKey(), stop = start + unfile(start);
+			if (start < ptr) file(start, ptr - start);
+			if (stop > end) file(end, stop - end);
+			extent = extents.ceilingEntry(stop);
+		}
+	}
+
+	/**
+	 * Hands out size more bytes past the limit, merging them with a free extent ending there
+	 * @param size The number of bytes added
+	 */
+	void extend(long size) {
+		long from = limit;
+		limit += size;
+		if (!stale) free(from, size); /* a stale index gets them upon rebuild */
+	}
+
+	/**
+	 * Rebuilds the free extents from the memory's allocation flags
+	 * @param memory The memory to scan
+	 */
+	void rebuild(Memory memory) {
+		extents.clear();
+		for (TreeSet<Extent> c : classes)
+			c.clear();
+		mask = 0;
+		free = 0;
+		scan(memory, base, limit);
+		stale = false;
+	}
+
+	/**
+	 * Gives the number of free bytes, without scanning the flags unless they were moved around
+	 * @param memory The memory to rebuild the extents of if stale
+	 * @return The total size of the free extents
+	 */
+	long available(Memory memory) {
+		if (stale) rebuild(memory);
+		return free;
+	}
+
+	/**
+	 * Gives the size of the largest free extent, the last one of the highest size class
+	 * @param memory The memory to rebuild the extents of if stale
+	 * @return The largest free extent's size, 0 if there's none
+	 */
+	long largest(Memory memory) {
+		if (stale) rebuild(memory);
+		return (mask == 0) ? 0 : classes[63 - Long.numberOfLeadingZeros(mask)].last().size;
+	}
+
+	/**
+	 * Files every free run of bytes found in the given range
+	 * @param memory The memory to scan
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 */
+	private void scan(Memory memory, long from, long to) {
+		long ptr = from;
+		while ((ptr = Memory.next_free(memory, ptr, to)) != -1) {
+			long end = Memory.next_alloc(memory, ptr, to);
+			if (end == -1) end = to;
+			file(ptr, end - ptr);
+			ptr = end;
+		}
+	}
+
+	/**
+	 * Picks a free extent of at least size bytes, the closest one of size's own class if any fits
+	 * @param size The requested size
+	 * @return The extent's start pointer<br>
+	 *         <b>-1</b> if couldn't find any
+	 */
+	private long fit(long size) {
+		TreeSet<Extent> own = classes[class_(size)];
+		if (!own.isEmpty() && own.last().size >= size) { /* a single lookup, never a walk through the class */
+			probe.size = size;
+			return own.ceiling(probe).ptr;
+		}
+		int c = class_(size) + 1; /* the next class, in which every extent fits */
+		long m = (c < CLASSES) ? mask & (-1L << c) : 0;
+		return (m != 0) ? classes[Long.numberOfTrailingZeros(m)].first().ptr : -1;
+	}
+
+	/**
+	 * Adds a free extent to the index
+	 * @param ptr The extent's start pointer
+	 * @param size The extent's size
+	 */
+	private void file(long ptr, long size) {
+		int c = class_(size);
+		Extent extent = new Extent(ptr, size);
+		extents.put(ptr, extent);
+		classes[c].add(extent);
+		mask |= 1L << c;
+		free += size;
+	}
+
+	/**
+	 * Removes a free extent from the index
+	 * @param ptr The extent's start pointer
+	 * @return The extent's size
+	 */
+	private long unfile(long ptr) {
+		Extent extent = extents.remove(ptr);
+		int c = class_(extent.size);
+		classes[c].remove(extent);
+		if (classes[c].isEmpty()) mask &= ~(1L << c);
+		free -= extent.size;
+		return extent.size;
+	}
+
+	/**
+	 * Gives the size class of an extent
+	 * @param size The extent's size
+	 * @return The extent's size class
+	 */
+	private static int class_(long size) {
+		return 63 - Long.numberOfLeadingZeros(size);
+	}
+
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * A region of a memory handing out ranges with a bump pointer, to be thrown away all at once<br>
+ * The region is allocated (and flagged) once, so that allocating from the arena only moves a pointer forward and zeroes
+ * the range, and {@link #reset()} gives every range back in constant time<br>
+ * <b>Scoping allocations :</b><br>
+ * 
+ * <pre>
+ * MemoryArena arena = new MemoryArena(memory, 1 &lt;&lt; 20);
+ * long mark = arena.mark();
+ * long ptr = arena.allocate(64);
+ * arena.rewind(mark); // gives back every range allocated since mark
+ * </pre>
+ * 
+ * Nested arenas are carved out of their parent with {@link #arena(long)}, and become invalid once the parent is rewound
+ * past them or reset<br>
+ * An arena isn't thread-safe, and {@link #relocate(MemoryRelocation)} must be called on it (and on each of its nested
+ * arenas) after compacting its memory, along with the pointers to the ranges it handed out
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryArena {
+
+	private final Memory	memory;
+	private long			base, limit;
+	private final boolean	owned;	/* whether the region was allocated by this arena */
+	private long			top;
+
+	/**
+	 * Allocates a new arena in a memory
+	 * @param memory The memory to allocate the arena's region into
+	 * @param size The region's size in bytes
+	 * @throws MemoryException if no free range fits the region
+	 */
+	public MemoryArena(Memory memory, long size) throws MemoryException {
+		this(memory, m_alloc(memory, size), size, true);
+	}
+
+	private MemoryArena(Memory memory, long base, long size, boolean owned) {
+		this.memory = memory;
+		this.base = base;
+		this.limit = base + size;
+		this.owned = owned;
+		this.top = base;
+	}
+
+	/**
+	 * Allocates size bytes (zeroed) from the arena
+	 * @param size The size (in bytes) to allocate
+	 * @return A pointer to the first allocated byte
+	 * @throws MemoryException if the arena hasn't size bytes left
+	 * @throws IllegalArgumentException if size isn't positive
+	 */
+	public long allocate(long size) throws MemoryException {
+		return allocate(size, 1);
+	}
+
+	/**
+	 * Allocates size bytes (zeroed) from the arena, at a pointer aligned to alignment
+	 * @param size The size (in bytes) to allocate
+	 * @param alignment A power of two
+	 * @return A pointer to the first allocated byte
+	 * @throws MemoryException if the arena hasn't size bytes left past the alignment
+	 * @throws IllegalArgumentException if size isn't positive or alignment isn't a power of two
+	 */
+	public long allocate(long size, long alignment) throws MemoryException {
+		if (size <= 0) throw new IllegalArgumentException("Allocation size must be positive");
+		if (Long.bitCount(alignment) != 1) throw new IllegalArgumentException("Alignment must be a power of two");
+		long ptr = top + alignment - 1 & -alignment;
+		if (ptr > limit - size) throw new MemoryException("Arena can't fit " + size + " more bytes (" + remaining() + " left)");
+		top = ptr + size;
+		memory.fill_(ptr, size, (byte) 0x0); /* ranges given back keep their bytes */
+		Memory.journal_(memory, ptr, size);
+		return ptr;
+	}
+
+	/**
+	 * Carves a nested arena out of this one
+	 * @param size The nested arena's size in bytes
+	 * @return The nested arena
+	 * @throws MemoryException if the arena hasn't size bytes left
+	 */
+	public MemoryArena arena(long size) throws MemoryException {
+		if (size <= 0) throw new IllegalArgumentException("Arena size must be positive");
+		if (top > limit - size) throw new MemoryException("Arena can't fit " + size + " more bytes (" + remaining() + " left)");
+		MemoryArena nested = new MemoryArena(memory, top, size, false);
+		top += size;
+		return nested;
+	}
+
+	/**
+	 * @return The arena's current top, to rewind to
+	 */
+	public long mark() {
+		return top;
+	}
+
+	/**
+	 * Gives back every range allocated since a mark
+	 * @param mark A mark of this arena, not rewound past since
+	 * @throws IllegalArgumentException if mark lies past the top or outside the arena
+	 */
+	public void rewind(long mark) {
+		if (mark < base || mark > top) throw new IllegalArgumentException("Mark " + mark + " isn't in [" + base + ", " + top + "]");
+		top = mark;
+	}
+
+	/**
+	 * Gives back every range of the arena
+	 */
+	public void reset() {
+		top = base;
+	}
+
+	/**
+	 * Gives the arena's region back to its memory, the arena mustn't be used past it
+	 * @throws IllegalStateException if the arena is nested (its region belongs to its parent)
+	 */
+	public void free() {
+		if (!owned) throw new IllegalStateException("A nested arena is freed along with its parent");
+		m_free(memory, base, limit - base);
+		top = limit;
+	}
+
+	/**
+	 * Fixes the arena's pointers up after its memory was compacted<br>
+	 * The region is allocated as a whole, so that a compaction moves all of it by the same distance
+	 * @param moved The runs the compaction moved
+	 */
+	public void relocate(MemoryRelocation moved) {
+		long delta = moved.relocate(base) - base;
+		base += delta;
+		limit += delta;
+		top += delta;
+	}
+
+	/**
+	 * @return The arena's memory
+	 */
+	public Memory memory() {
+		return memory;
+	}
+
+	/**
+	 * @return The pointer to the arena's first byte
+	 */
+	public long base() {
+		return base;
+	}
+
+	/**
+	 * @return The arena's size in bytes
+	 */
+	public long capacity() {
+		return limit - base;
+	}
+
+	/**
+	 * @return The number of bytes handed out
+	 */
+	public long used() {
+		return top - base;
+	}
+
+	/**
+	 * @return The number of bytes left
+	 */
+	public long remaining() {
+		return limit - top;
+	}
+
+}
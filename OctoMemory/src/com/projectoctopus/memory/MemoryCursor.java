@@ -0,0 +1,557 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A position-tracking view over a memory, the way a <code>ByteBuffer</code> is over its array<br>
+ * Values are read and written at the cursor's position, which moves past them, and never beyond its limit<br>
+ * <b>Streaming a region to a file :</b><br>
+ * 
+ * <pre>
+ * new MemoryCursor(memory, ptr, ptr + size).transfer_to(fileChannel);
+ * </pre>
+ * 
+ * Transfers (and the stream and channel adapters) move whole contiguous ranges of the memory's storage at once
+ * @see MemoryReader
+ * @see MemoryWriter
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryCursor {
+
+	private final Memory memory;
+
+	private long position;
+
+	private long limit;
+
+	/**
+	 * Initializes a cursor over a whole memory, at its first byte
+	 * @param memory The memory to operate with
+	 */
+	public MemoryCursor(Memory memory) {
+		this(memory, 0, Memory.capacity_(memory));
+	}
+
+	/**
+	 * Initializes a cursor over a range of a memory
+	 * @param memory The memory to operate with
+	 * @param position The cursor's position
+	 * @param limit The cursor's limit (exclusive)
+	 * @throws IllegalArgumentException if the range isn't within the memory
+	 */
+	public MemoryCursor(Memory memory, long position, long limit) {
+		this.memory = memory;
+		limit(limit);
+		position(position);
+	}
+
+	/**
+	 * @return The memory this cursor operates with
+	 */
+	public Memory memory() {
+		return memory;
+	}
+
+	/**
+	 * @return The pointer the next value is read or written at
+	 */
+	public long position() {
+		return position;
+	}
+
+	/**
+	 * Moves the cursor
+	 * @param position The new position
+	 * @return This cursor
+	 * @throws IllegalArgumentException if position is negative or past the limit
+	 */
+	public MemoryCursor position(long position) {
+		if (position < 0 || position > limit) throw new IllegalArgumentException("Position must be between : 0 and " + limit);
+		this.position = position;
+		return this;
+	}
+
+	/**
+	 * @return The pointer past the last byte the cursor may read or write
+	 */
+	public long limit() {
+		return limit;
+	}
+
+	/**
+	 * Sets the cursor's limit (the position is brought back to it if past it)
+	 * @param limit The new limit
+	 * @return This cursor
+	 * @throws IllegalArgumentException if limit is negative or past the memory's size
+	 */
+	public MemoryCursor limit(long limit) {
+		if (limit < 0 || limit > Memory.capacity_(memory)) throw new IllegalArgumentException("Limit must be between : 0 and " + Memory.capacity_(memory));
+		this.limit = limit;
+		if (position > limit) position = limit;
+		return this;
+	}
+
+	/**
+	 * @return The number of bytes between the position and the limit
+	 */
+	public long remaining() {
+		return limit - position;
+	}
+
+	/**
+	 * @return <b>true</b> if there are bytes left between the position and the limit<br>
+	 *         <b>false</b> otherwise
+	 */
+	public boolean has_remaining() {
+		return position < limit;
+	}
+
+	/**
+	 * Moves the position past size bytes to be read
+	 * @param size The number of bytes
+	 * @return The former position
+	 * @throws BufferUnderflowException if fewer bytes remain
+	 */
+	private long next_read(long size) {
+		if (size > remaining()) throw new BufferUnderflowException();
+		long ptr = position;
+		position += size;
+		return ptr;
+	}
+
+	/**
+	 * Moves the position past size bytes to be written
+	 * @param size The number of bytes
+	 * @return The former position
+	 * @throws BufferOverflowException if fewer bytes remain
+	 */
+	private long next_write(long size) {
+		if (size > remaining()) throw new BufferOverflowException();
+		long ptr = position;
+		position += size;
+		return ptr;
+	}
+
+	public boolean read_bool() {
+		return MemoryReader.read_bool(memory, next_read(Byte.BYTES));
+	}
+
+	public boolean[] read_bool_array(int size) {
+		return MemoryReader.read_bool_array(memory, next_read((long) size * Byte.BYTES), size);
+	}
+
+	public MemoryCursor read_bool_array(boolean[] dst, int off, int len) {
+		MemoryReader.read_bool_array(memory, next_read((long) len * Byte.BYTES), dst, off, len);
+		return this;
+	}
+
+	public byte read_byte() {
+		return MemoryReader.read_byte(memory, next_read(Byte.BYTES));
+	}
+
+	public byte[] read_byte_array(int size) {
+		return MemoryReader.read_byte_array(memory, next_read((long) size * Byte.BYTES), size);
+	}
+
+	public MemoryCursor read_byte_array(byte[] dst, int off, int len) {
+		MemoryReader.read_byte_array(memory, next_read((long) len * Byte.BYTES), dst, off, len);
+		return this;
+	}
+
+	public char read_char() {
+		return MemoryReader.read_char(memory, next_read(Character.BYTES));
+	}
+
+	public char[] read_char_array(int size) {
+		return MemoryReader.read_char_array(memory, next_read((long) size * Character.BYTES), size);
+	}
+
+	public MemoryCursor read_char_array(char[] dst, int off, int len) {
+		MemoryReader.read_char_array(memory, next_read((long) len * Character.BYTES), dst, off, len);
+		return this;
+	}
+
+	public double read_double() {
+		return MemoryReader.read_double(memory, next_read(Double.BYTES));
+	}
+
+	public double[] read_double_array(int size) {
+		return MemoryReader.read_double_array(memory, next_read((long) size * Double.BYTES), size);
+	}
+
+	public MemoryCursor read_double_array(double[] dst, int off, int len) {
+		MemoryReader.read_double_array(memory, next_read((long) len * Double.BYTES), dst, off, len);
+		return this;
+	}
+
+	public float read_float() {
+		return MemoryReader.read_float(memory, next_read(Float.BYTES));
+	}
+
+	public float[] read_float_array(int size) {
+		return MemoryReader.read_float_array(memory, next_read((long) size * Float.BYTES), size);
+	}
+
+	public MemoryCursor read_float_array(float[] dst, int off, int len) {
+		MemoryReader.read_float_array(memory, next_read((long) len * Float.BYTES), dst, off, len);
+		return this;
+	}
+
+	public int read_int() {
+		return MemoryReader.read_int(memory, next_read(Integer.BYTES));
+	}
+
+	public int[] read_int_array(int size) {
+		return MemoryReader.read_int_array(memory, next_read((long) size * Integer.BYTES), size);
+	}
+
+	public MemoryCursor read_int_array(int[] dst, int off, int len) {
+		MemoryReader.read_int_array(memory, next_read((long) len * Integer.BYTES), dst, off, len);
+		return this;
+	}
+
+	public long read_long() {
+		return MemoryReader.read_long(memory, next_read(Long.BYTES));
+	}
+
+	public long[] read_long_array(int size) {
+		return MemoryReader.read_long_array(memory, next_read((long) size * Long.BYTES), size);
+	}
+
+	public MemoryCursor read_long_array(long[] dst, int off, int len) {
+		MemoryReader.read_long_array(memory, next_read((long) len * Long.BYTES), dst, off, len);
+		return this;
+	}
+
+	public short read_short() {
+		return MemoryReader.read_short(memory, next_read(Short.BYTES));
+	}
+
+	public short[] read_short_array(int size) {
+		return MemoryReader.read_short_array(memory, next_read((long) size * Short.BYTES), size);
+	}
+
+	public MemoryCursor read_short_array(short[] dst, int off, int len) {
+		MemoryReader.read_short_array(memory, next_read((long) len * Short.BYTES), dst, off, len);
+		return this;
+	}
+
+	public String read_string() {
+		if (!has_remaining()) throw new BufferUnderflowException();
+		return MemoryUTF8.decode(memory, next_read(MemoryUTF8.skip(memory, position) - position));
+	}
+
+	public MemoryCursor write_(boolean value) {
+		MemoryWriter.write_(memory, next_write(Byte.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(boolean[] booleans) {
+		return write_(booleans, 0, booleans.length);
+	}
+
+	public MemoryCursor write_(boolean[] booleans, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Byte.BYTES), booleans, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(byte value) {
+		MemoryWriter.write_(memory, next_write(Byte.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(byte[] bytes) {
+		return write_(bytes, 0, bytes.length);
+	}
+
+	public MemoryCursor write_(byte[] bytes, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Byte.BYTES), bytes, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(char value) {
+		MemoryWriter.write_(memory, next_write(Character.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(char[] chars) {
+		return write_(chars, 0, chars.length);
+	}
+
+	public MemoryCursor write_(char[] chars, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Character.BYTES), chars, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(double value) {
+		MemoryWriter.write_(memory, next_write(Double.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(double[] doubles) {
+		return write_(doubles, 0, doubles.length);
+	}
+
+	public MemoryCursor write_(double[] doubles, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Double.BYTES), doubles, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(float value) {
+		MemoryWriter.write_(memory, next_write(Float.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(float[] floats) {
+		return write_(floats, 0, floats.length);
+	}
+
+	public MemoryCursor write_(float[] floats, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Float.BYTES), floats, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(int value) {
+		MemoryWriter.write_(memory, next_write(Integer.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(int[] ints) {
+		return write_(ints, 0, ints.length);
+	}
+
+	public MemoryCursor write_(int[] ints, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Integer.BYTES), ints, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(long value) {
+		MemoryWriter.write_(memory, next_write(Long.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(long[] longs) {
+		return write_(longs, 0, longs.length);
+	}
+
+	public MemoryCursor write_(long[] longs, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Long.BYTES), longs, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(short value) {
+		MemoryWriter.write_(memory, next_write(Short.BYTES), value);
+		return this;
+	}
+
+	public MemoryCursor write_(short[] shorts) {
+		return write_(shorts, 0, shorts.length);
+	}
+
+	public MemoryCursor write_(short[] shorts, int off, int len) {
+		MemoryWriter.write_(memory, next_write((long) len * Short.BYTES), shorts, off, len);
+		return this;
+	}
+
+	public MemoryCursor write_(String str) {
+		MemoryUTF8.encode(memory, next_write(MemoryUTF8.sizeof_(str)), str);
+		return this;
+	}
+
+	/**
+	 * Copies bytes from the position into a buffer, as many as fit in it or remain, whichever is fewer
+	 * @param dst The buffer to fill
+	 * @return The number of bytes copied
+	 */
+	public int read(ByteBuffer dst) {
+		int size = (int) Math.min(dst.remaining(), remaining());
+		for (int done = 0; done < size;) { /* one bulk copy per contiguous range, never copying a page to read it */
+			ByteBuffer view = memory.peek_(position, size - done);
+			done += view.remaining();
+			position += view.remaining();
+			dst.put(view);
+		}
+		return size;
+	}
+
+	/**
+	 * Copies a buffer's bytes at the position, as many as the buffer holds or remain, whichever is fewer
+	 * @param src The buffer to drain
+	 * @return The number of bytes copied
+	 */
+	public int write(ByteBuffer src) {
+		int size = (int) Math.min(src.remaining(), remaining());
+		long start = position;
+		for (int done = 0; done < size;) { /* one bulk copy per contiguous range */
+			ByteBuffer view = memory.view_(position, size - done);
+			int n = view.remaining();
+			ByteBuffer slice = src.slice(src.position(), n);
+			view.put(slice);
+			src.position(src.position() + n);
+			done += n;
+			position += n;
+		}
+		Memory.m_flag(memory, start, size, true); /* once written, so that a journal records the new bytes */
+		return size;
+	}
+
+	/**
+	 * Writes every byte from the position to the limit into a channel, or as many as a non-blocking channel takes
+	 * @param channel The channel to write into
+	 * @return The number of bytes written
+	 * @throws IOException
+	 */
+	public long transfer_to(WritableByteChannel channel) throws IOException {
+		long start = position;
+		while (has_remaining()) { /* whole contiguous ranges, straight from the memory's storage */
+			ByteBuffer view = memory.peek_(position, remaining());
+			while (view.hasRemaining()) {
+				int n = channel.write(view);
+				if (n == 0) return position - start; /* the channel is full, the caller tries again later */
+				position += n;
+			}
+		}
+		return position - start;
+	}
+
+	/**
+	 * Reads bytes from a channel at the position, until the limit, the end of the channel, or a non-blocking channel
+	 * having nothing left to give
+	 * @param channel The channel to read from
+	 * @return The number of bytes read
+	 * @throws IOException
+	 */
+	public long transfer_from(ReadableByteChannel channel) throws IOException {
+		long start = position;
+		while (has_remaining()) { /* whole contiguous ranges, straight into the memory's storage */
+			ByteBuffer view = memory.view_(position, remaining());
+			int n = channel.read(view);
+			if (n <= 0) break; /* the end of the channel, or nothing to read for now */
+			Memory.m_flag(memory, position, n, true);
+			position += n;
+		}
+		return position - start;
+	}
+
+	/**
+	 * @return An input stream reading from the position to the limit (moving the cursor)
+	 */
+	public InputStream input() {
+		return new InputStream() {
+
+			@Override
+			public int read() {
+				return has_remaining() ? read_byte() & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (len == 0) return 0;
+				if (!has_remaining()) return -1;
+				len = (int) Math.min(len, remaining());
+				read_byte_array(b, off, len);
+				return len;
+			}
+
+			@Override
+			public long skip(long n) {
+				n = Math.max(0, Math.min(n, remaining()));
+				position += n;
+				return n;
+			}
+
+			@Override
+			public int available() {
+				return (int) Math.min(remaining(), Integer.MAX_VALUE);
+			}
+
+		};
+	}
+
+	/**
+	 * @return An output stream writing from the position to the limit (moving the cursor)
+	 */
+	public OutputStream output() {
+		return new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				if (!has_remaining()) throw new IOException("Memory cursor reached its limit");
+				write_((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (len > remaining()) throw new IOException("Memory cursor reached its limit");
+				write_(b, off, len);
+			}
+
+		};
+	}
+
+	/**
+	 * @return A channel reading and writing from the position to the limit (moving the cursor)<br>
+	 *         Reading returns -1 at the limit, writing past it throws an IOException as {@link #output()} does
+	 */
+	public ByteChannel channel() {
+		return new ByteChannel() {
+
+			private boolean open = true;
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				if (!open) throw new ClosedChannelException();
+				if (!has_remaining() && dst.hasRemaining()) return -1;
+				return MemoryCursor.this.read(dst);
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				if (!open) throw new ClosedChannelException();
+				if (!has_remaining() && src.hasRemaining()) throw new IOException("Memory cursor reached its limit"); /* never 0 forever */
+				return MemoryCursor.this.write(src);
+			}
+
+			@Override
+			public boolean isOpen() {
+				return open;
+			}
+
+			@Override
+			public void close() {
+				open = false;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,178 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_flag;
+import static com.projectoctopus.memory.Memory.next_alloc;
+import static com.projectoctopus.memory.Memory.next_free;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts a memory a slice at a time, so that no caller ever waits for a whole compaction<br>
+ * A slice slides allocated runs down over the hole before them, as {@link Memory#m_compact} does, until it moved about
+ * a slice's worth of bytes, then hands the moved runs to a listener to fix its pointers up. Runs larger than a slice
+ * are left in place, so that a slice's pause stays bounded. The next slice goes on from where the last one stopped,
+ * and a pass ends at the end of the memory<br>
+ * <b>Coordination :</b> a slice holds the memory's monitor and its allocator's locks (every stripe's of a
+ * {@link ConcurrentMemory}), from the first run moved to the listener's return. Allocating and freeing flag their
+ * range under those locks, so that a slice never mistakes a range being allocated or freed for a hole. Threads
+ * following pointers into the memory while a defragmenter runs must hold the memory's monitor, as the runs they point
+ * to may move<br>
+ * <b>Running in the background :</b><br>
+ * 
+ * <pre>
+ * MemoryDefragmenter defragmenter = new MemoryDefragmenter(memory, 64 * 1024, moved -&gt; index.relocate(moved));
+ * defragmenter.start(0.5, 100); // a pass whenever fragmentation passes 50%, checked every 100ms
+ * </pre>
+ * 
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryDefragmenter {
+
+	/**
+	 * Fixes pointers up after a slice, while the memory's monitor is still held
+	 */
+	public static interface Listener {
+		void relocated(MemoryRelocation moved);
+	}
+
+	private final Memory	memory;
+	private final long		slice;
+	private final Listener	listener;
+	private long			cursor;		/* where the next slice starts looking for a hole */
+	private volatile Thread	thread;
+
+	/**
+	 * Creates a defragmenter
+	 * @param memory The memory to compact
+	 * @param slice The number of bytes a slice moves at most
+	 * @param listener The listener of the moved runs
+	 * @throws IllegalArgumentException if slice isn't positive
+	 */
+	public MemoryDefragmenter(Memory memory, long slice, Listener listener) {
+		if (slice <= 0) throw new IllegalArgumentException("Slice size must be positive");
+		this.memory = memory;
+		this.slice = slice;
+		this.listener = listener;
+	}
+
+	/**
+	 * Runs a slice
+	 * @return <b>true</b> if the pass goes on<br>
+	 *         <b>false</b> if it reached the end of the memory (the next slice starts a new pass)
+	 */
+	public boolean step() {
+		synchronized (memory) {
+			return memory.exclusive_(() -> {
+				MemoryRelocation moved = new MemoryRelocation();
+				boolean more = slice_(moved);
+				if (moved.count() > 0 && listener != null) listener.relocated(moved);
+				return more;
+			});
+		}
+	}
+
+	/**
+	 * Slides the runs following the cursor down, until a slice's worth of bytes moved
+	 * @param moved The moved runs
+	 * @return Whether the pass goes on
+	 */
+	private boolean slice_(MemoryRelocation moved) {
+		long size = memory.capacity(), budget = slice;
+		while (budget > 0) {
+			long hole = next_free(memory, cursor, size);
+			long src = (hole == -1) ? -1 : next_alloc(memory, hole, size);
+			if (src == -1) { /* nothing left to slide down */
+				cursor = 0;
+				return false;
+			}
+			long end = next_free(memory, src, size);
+			if (end == -1) end = size;
+			long len = end - src;
+			if (len > slice) { /* too large for a slice, stays put */
+				cursor = end;
+				continue;
+			}
+			if (len > budget && budget < slice) break; /* left for the next slice */
+			memory.copy_(src, hole, len);
+			memory.claim(hole, Math.min(len, src - hole)); /* the hole's bytes the run now covers */
+			m_flag(memory, hole, len, true);
+			long free = Math.max(hole + len, src); /* the run's bytes it no longer covers */
+			memory.fill_(free, end - free, (byte) 0x0);
+			memory.release(free, end - free); /* flags them free as well */
+			Memory.journal_free_(memory, free, end - free);
+			moved.add(src, hole, len);
+			cursor = hole + len;
+			budget -= len;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs slices until the end of the memory, pausing in between
+	 * @param pause The pause between two slices in nanoseconds, to let callers through
+	 * @throws InterruptedException if interrupted while pausing
+	 */
+	public void pass(long pause) throws InterruptedException {
+		while (step())
+			TimeUnit.NANOSECONDS.sleep(pause);
+	}
+
+	/**
+	 * Starts a daemon thread running a pass whenever the memory's fragmentation passes a threshold<br>
+	 * A concurrent memory's largest free block is at most a stripe, its threshold must account for it
+	 * @param threshold The fragmentation ratio (see {@link MemoryStats#getFragmentation()}) to start a pass from
+	 * @param period The time between two checks in milliseconds (the slices of a pass are 1ms apart)
+	 * @throws IllegalStateException if already started
+	 */
+	public synchronized void start(double threshold, long period) {
+		if (thread != null) throw new IllegalStateException("Defragmenter already started");
+		MemoryStats stats = Memory.m_stats(memory);
+		Thread thread = new Thread(() -> {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					double fragmentation = stats.getFragmentation(); /* under the allocator's locks */
+					if (fragmentation > threshold) pass(TimeUnit.MILLISECONDS.toNanos(1));
+					Thread.sleep(period);
+				}
+			} catch (InterruptedException e) {
+				/* stopped */
+			}
+		}, "octomemory-defragmenter");
+		thread.setDaemon(true);
+		this.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the background thread, waiting for its current slice to end
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized void stop() throws InterruptedException {
+		Thread thread = this.thread;
+		if (thread == null) return;
+		thread.interrupt();
+		thread.join();
+		this.thread = null;
+	}
+
+}
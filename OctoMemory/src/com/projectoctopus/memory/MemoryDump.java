@@ -0,0 +1,296 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formats a memory's bytes as a hex dump, or the differences between two memories, a chunk at a time<br>
+ * Bytes are read in bulk and formatted through lookup tables into a reusable buffer, which is handed to the output
+ * once full : dumping costs no allocation per line, and runs as fast as the output takes it<br>
+ * <b>Lines :</b> the offset (16 hex digits), the bytes in hex (a wider space every 8), then the printable ones
+ * between bars. With folding, a run of zero lines shows as its first line followed by <code>*</code>, and the dump
+ * ends with the offset past its last byte<br>
+ * 
+ * <pre>
+ * 0000000000000000   48 65 6c 6c 6f 00 00 00  00 00 00 00 00 00 00 00  |Hello...........|
+ * 0000000000000010   00 00 00 00 00 00 00 00  00 00 00 00 00 00 00 00  |................|
+ * *
+ * 0000000000000100
+ * </pre>
+ * 
+ * <b>Diffs :</b> only the lines that differ are printed, the first memory's line marked <code>-</code> followed by the
+ * second one's marked <code>+</code><br>
+ * A dumper isn't thread-safe, each thread uses its own
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryDump {
+
+	/**
+	 * The default number of bytes per line
+	 */
+	public static final int DEFAULT_WIDTH = 16;
+
+	/**
+	 * The size of the chunks bytes are read and written by
+	 */
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+	private final int width;
+
+	private final boolean fold;
+
+	private final byte[] chunk, other, zeros;	/* whole lines of bytes */
+
+	private final byte[] out;	/* formatted, not written yet */
+
+	private final int line;	/* the largest formatted line */
+
+	private int length;
+
+	private Appendable appendable;
+
+	private WritableByteChannel channel;
+
+	/**
+	 * Initializes a dumper of 16-byte lines, folding zero runs
+	 */
+	public MemoryDump() {
+		this(DEFAULT_WIDTH, true);
+	}
+
+	/**
+	 * Initializes a dumper
+	 * @param width The number of bytes per line
+	 * @param fold Whether to fold runs of zero lines
+	 * @throws IllegalArgumentException if width isn't positive
+	 */
+	public MemoryDump(int width, boolean fold) {
+		if (width < 1 || width > CHUNK_SIZE) throw new IllegalArgumentException("Line width must be between 1 and " + CHUNK_SIZE + " bytes");
+		this.width = width;
+		this.fold = fold;
+		chunk = new byte[CHUNK_SIZE / width * width];
+		other = new byte[chunk.length];
+		zeros = new byte[width];
+		line = 16 + 3 + 3 * width + (width - 1) / 8 + 2 + width + 2;
+		out = new byte[Math.max(CHUNK_SIZE, 2 * line)];
+	}
+
+	/**
+	 * Dumps a range of a memory
+	 * @param memory The memory to dump
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @param out The output
+	 * @throws IOException if the output can't be written
+	 */
+	public void dump(Memory memory, long from, long to, Appendable out) throws IOException {
+		appendable = out;
+		try {
+			dump_(memory, from, to);
+		} finally {
+			appendable = null;
+			length = 0;
+		}
+	}
+
+	/**
+	 * Dumps a range of a memory
+	 * @param memory The memory to dump
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @param out The output
+	 * @throws IOException if the output can't be written
+	 */
+	public void dump(Memory memory, long from, long to, WritableByteChannel out) throws IOException {
+		channel = out;
+		try {
+			dump_(memory, from, to);
+		} finally {
+			channel = null;
+			length = 0;
+		}
+	}
+
+	/**
+	 * Prints the lines of a range that differ between two memories
+	 * @param a The first memory
+	 * @param b The second memory
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @param out The output
+	 * @return The number of differing bytes
+	 * @throws IOException if the output can't be written
+	 */
+	public long diff(Memory a, Memory b, long from, long to, Appendable out) throws IOException {
+		appendable = out;
+		try {
+			return diff_(a, b, from, to);
+		} finally {
+			appendable = null;
+			length = 0;
+		}
+	}
+
+	/**
+	 * Prints the lines of a range that differ between two memories
+	 * @param a The first memory
+	 * @param b The second memory
+	 * @param from The starting pointer (inclusive)
+	 * @param to The ending pointer (exclusive)
+	 * @param out The output
+	 * @return The number of differing bytes
+	 * @throws IOException if the output can't be written
+	 */
+	public long diff(Memory a, Memory b, long from, long to, WritableByteChannel out) throws IOException {
+		channel = out;
+		try {
+			return diff_(a, b, from, to);
+		} finally {
+			channel = null;
+			length = 0;
+		}
+	}
+
+	private void dump_(Memory memory, long from, long to) throws IOException {
+		check(memory, from, to);
+		long run = 0; /* the zero lines in a row */
+		for (long ptr = from; ptr < to;) {
+			int n = (int) Math.min(chunk.length, to - ptr);
+			memory.get_(ptr, chunk, 0, n);
+			for (int at = 0; at < n; at += width) {
+				int count = Math.min(width, n - at);
+				if (fold && count == width && Arrays.mismatch(chunk, at, at + width, zeros, 0, width) == -1) {
+					if (run++ == 1) star_();
+					if (run > 1) continue; /* folded */
+				} else run = 0;
+				line_(ptr + at, (byte) 0, chunk, at, count);
+			}
+			ptr += n;
+		}
+		if (fold) offset_(to);
+		flush_();
+	}
+
+	private long diff_(Memory a, Memory b, long from, long to) throws IOException {
+		check(a, from, to);
+		check(b, from, to);
+		long differing = 0;
+		for (long ptr = from; ptr < to;) {
+			int n = (int) Math.min(chunk.length, to - ptr);
+			a.get_(ptr, chunk, 0, n);
+			b.get_(ptr, other, 0, n);
+			int first = Arrays.mismatch(chunk, 0, n, other, 0, n);
+			for (int at = (first == -1) ? n : first / width * width; at < n; at += width) {
+				int count = Math.min(width, n - at), d = 0;
+				for (int i = at; i < at + count; i++)
+					if (chunk[i] != other[i]) d++;
+				if (d == 0) continue;
+				differing += d;
+				line_(ptr + at, (byte) '-', chunk, at, count);
+				line_(ptr + at, (byte) '+', other, at, count);
+			}
+			ptr += n;
+		}
+		flush_();
+		return differing;
+	}
+
+	private static void check(Memory memory, long from, long to) {
+		if (from < 0 || from > to || to > memory.capacity()) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of a " + memory.capacity() + "-byte memory");
+	}
+
+	/**
+	 * Formats a line
+	 * @param offset The pointer of the line's first byte
+	 * @param mark The diff mark, 0 if none
+	 * @param src The bytes
+	 * @param at The line's first byte in src
+	 * @param count The line's number of bytes
+	 */
+	private void line_(long offset, byte mark, byte[] src, int at, int count) throws IOException {
+		if (out.length - length < line) flush_();
+		byte[] out = this.out;
+		int o = hex_(offset, length);
+		out[o++] = ' ';
+		out[o++] = (mark != 0) ? mark : (byte) ' ';
+		out[o++] = ' ';
+		for (int i = 0; i < width; i++) {
+			if (i > 0 && (i & 7) == 0) out[o++] = ' ';
+			if (i < count) {
+				int b = src[at + i] & 0xff;
+				out[o++] = HEX[b >>> 4];
+				out[o++] = HEX[b & 15];
+			} else {
+				out[o++] = ' ';
+				out[o++] = ' ';
+			}
+			out[o++] = ' ';
+		}
+		out[o++] = ' ';
+		out[o++] = '|';
+		for (int i = 0; i < count; i++) {
+			byte b = src[at + i];
+			out[o++] = (b >= 0x20 && b < 0x7f) ? b : (byte) '.';
+		}
+		out[o++] = '|';
+		out[o++] = '\n';
+		length = o;
+	}
+
+	private void star_() throws IOException {
+		if (out.length - length < 2) flush_();
+		out[length++] = '*';
+		out[length++] = '\n';
+	}
+
+	private void offset_(long offset) throws IOException {
+		if (out.length - length < 17) flush_();
+		length = hex_(offset, length);
+		out[length++] = '\n';
+	}
+
+	private int hex_(long value, int o) {
+		for (int shift = 60; shift >= 0; shift -= 4)
+			out[o++] = HEX[(int) (value >>> shift) & 15];
+		return o;
+	}
+
+	/**
+	 * Hands the formatted bytes to the output
+	 */
+	private void flush_() throws IOException {
+		if (length == 0) return;
+		if (channel != null) {
+			ByteBuffer buffer = ByteBuffer.wrap(out, 0, length);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} else appendable.append(new String(out, 0, length, StandardCharsets.ISO_8859_1));
+		length = 0;
+	}
+
+}
@@ -0,0 +1,447 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead journal making a memory's mutations durable, at a cost proportional to the bytes changed<br>
+ * Once attached, every range flagged by {@link Memory#m_flag} is appended to the log : written ranges with their
+ * bytes, freed ranges and allocations by their pointer and size only. This covers {@link MemoryWriter},
+ * {@link MemoryCursor}, {@link MemoryUTF8}, the collections (written through {@link MemoryWriter}),
+ * {@link Memory#m_alloc}, {@link Memory#m_free}, the bulk operations and compactions. {@link MemoryStruct},
+ * {@link MemorySymbols} and {@link MemoryArena} write in place without flagging, and record their writes themselves.
+ * Any other code writing a memory's storage in place has to call {@link #record(long, long)} after writing<br>
+ * <b>Group commit :</b> records are appended in memory, {@link #commit()} makes every record appended so far durable.
+ * Threads committing together share a single write and fsync : the first one in flushes for all the others<br>
+ * <b>Recovery :</b> {@link #open(Memory, File, File)} loads the last checkpoint into the memory, then replays the log on
+ * top of it, up to its last whole record (a torn tail is cut off). A {@link PagedMemory} grows to fit the records past
+ * its end, any other memory has to be large enough. {@link #checkpoint()} writes the memory's image and empties the
+ * log<br>
+ * <b>Log format :</b> records of a type byte (1 : write, 2 : free, 3 : allocation), a <code>long</code> pointer, a
+ * <code>long</code> size, the bytes for a write, and the CRC32C of all of these
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryJournal implements Closeable {
+
+	static final byte WRITE = 1, FREE = 2, ALLOC = 3;
+
+	/**
+	 * The magic number of a checkpoint ("OCTOCKP1")
+	 */
+	static final long MAGIC = 0x4f43544f434b5031L;
+
+	/**
+	 * The largest write record, larger ranges are split
+	 */
+	static final int RECORD_SIZE = 1 << 20;
+
+	private static final int HEADER = 1 + Long.BYTES + Long.BYTES;
+
+	private final Memory		memory;
+	private final File			checkpoint;
+	private final FileChannel	channel;
+	private final Object		io	= new Object();	/* held while flushing, committers queue on it */
+	private final CRC32C		crc	= new CRC32C();
+	private ByteBuffer			buffer, spare;
+	private long				appended;				/* bytes ever appended */
+	private volatile long		durable;				/* bytes ever made durable */
+
+	private MemoryJournal(Memory memory, File checkpoint, FileChannel channel) {
+		this.memory = memory;
+		this.checkpoint = checkpoint;
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(64 * 1024);
+		spare = ByteBuffer.allocate(64 * 1024);
+	}
+
+	/**
+	 * Recovers a memory from its checkpoint and log, then attaches a journal to it<br>
+	 * The memory must be fresh (as allocated) and of the checkpoint's size
+	 * @param memory The memory to recover into and journal
+	 * @param checkpoint The checkpoint file (may not exist yet)
+	 * @param log The log file (may not exist yet)
+	 * @return The attached journal
+	 * @throws IOException if the checkpoint is invalid or the files can't be read
+	 * @throws IllegalStateException if the memory is already journaled
+	 */
+	public static MemoryJournal open(Memory memory, File checkpoint, File log) throws IOException {
+		synchronized (memory) {
+			if (memory.journal != null) throw new IllegalStateException("Memory already journaled");
+			if (checkpoint.exists()) load(memory, checkpoint);
+			FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				long end = replay(memory, channel);
+				channel.truncate(end); /* cuts a torn tail off */
+				channel.position(end);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			memory.invalidate(); /* the free extents come from the recovered flags */
+			MemoryJournal journal = new MemoryJournal(memory, checkpoint, channel);
+			journal.appended = journal.durable = channel.position();
+			memory.journal = journal;
+			return journal;
+		}
+	}
+
+	/*
+	 * Recording
+	 */
+
+	/**
+	 * Records a range of a journaled memory that was just written in place
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of bytes written
+	 */
+	public void record(long ptr, long size) {
+		flagged(ptr, size, true);
+	}
+
+	/**
+	 * Records a range whose flags were set, see {@link Memory#m_flag}
+	 * @param ptr The starting pointer (inclusive)
+	 * @param size The number of flags set
+	 * @param allocated The flags' new value
+	 */
+	void flagged(long ptr, long size, boolean allocated) {
+		if (!allocated) {
+			append(FREE, ptr, size);
+			return;
+		}
+		for (long done = 0; done < size; done += RECORD_SIZE)
+			append(WRITE, ptr + done, Math.min(size - done, RECORD_SIZE));
+	}
+
+	/**
+	 * Records an allocation, see {@link Memory#m_alloc}
+	 * @param ptr The allocated range's pointer
+	 * @param size The allocated range's size
+	 */
+	void allocated(long ptr, long size) {
+		append(ALLOC, ptr, size);
+	}
+
+	/**
+	 * Appends a record to the buffer, reading a write's bytes straight from the memory
+	 * @param type The record's type
+	 * @param ptr The range's pointer
+	 * @param size The range's size (at most {@link #RECORD_SIZE} for a write)
+	 */
+	private synchronized void append(byte type, long ptr, long size) {
+		int bytes = (type == WRITE) ? (int) size : 0;
+		int length = HEADER + bytes + Integer.BYTES;
+		if (buffer.remaining() < length) { /* grows, until the next commit takes it */
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() << 1, buffer.position() + length));
+			buffer.flip();
+			buffer = grown.put(buffer);
+		}
+		int start = buffer.position();
+		buffer.put(type).putLong(ptr).putLong(size);
+		if (bytes > 0) {
+			memory.get_(ptr, buffer.array(), buffer.position(), bytes);
+			buffer.position(buffer.position() + bytes);
+		}
+		crc.reset();
+		crc.update(buffer.array(), start, buffer.position() - start);
+		buffer.putInt((int) crc.getValue());
+		appended += length;
+	}
+
+	/*
+	 * Durability
+	 */
+
+	/**
+	 * Makes every record appended so far durable, along with those of the threads committing at the same time
+	 * @throws IOException if the log can't be written
+	 */
+	public void commit() throws IOException {
+		long target;
+		synchronized (this) {
+			target = appended;
+		}
+		if (durable >= target) return;
+		synchronized (io) {
+			if (durable >= target) return; /* flushed by the committer before this one */
+			ByteBuffer out;
+			long upto;
+			synchronized (this) { /* takes every record appended until now, appenders go on in the spare buffer */
+				out = buffer;
+				buffer = spare;
+				spare = null;
+				upto = appended;
+			}
+			try {
+				out.flip();
+				write_(out);
+			} catch (IOException | RuntimeException e) {
+				synchronized (this) {
+					requeue_(out);
+				}
+				throw e;
+			}
+			durable = upto;
+			out.clear();
+			synchronized (this) {
+				spare = out;
+			}
+		}
+	}
+
+	/**
+	 * Writes records at the end of the log and forces them, cutting the log back to where it was if it fails
+	 * @param out The records, flipped
+	 * @throws IOException if the log can't be written (the records are then all still in out, from its start)
+	 */
+	private void write_(ByteBuffer out) throws IOException {
+		long start = channel.position();
+		try {
+			while (out.hasRemaining())
+				channel.write(out);
+			channel.force(false);
+		} catch (IOException | RuntimeException e) {
+			try { /* no torn record may stay in front of the ones written again */
+				channel.truncate(start);
+				channel.position(start);
+			} catch (IOException t) {
+				e.addSuppressed(t);
+			}
+			out.rewind();
+			throw e;
+		}
+	}
+
+	/**
+	 * Puts records that couldn't be written back in front of those appended since, so that the next commit writes them
+	 * in order and the log never has a gap
+	 * @param out The records that couldn't be written, flipped
+	 */
+	private void requeue_(ByteBuffer out) {
+		ByteBuffer rest = buffer;
+		rest.flip();
+		if (out.capacity() - out.limit() >= rest.remaining()) out.position(out.limit()).limit(out.capacity());
+		else out = ByteBuffer.allocate(out.limit() + rest.capacity()).put(out);
+		buffer = out.put(rest);
+		spare = rest.clear();
+	}
+
+	/**
+	 * Writes the memory's image to the checkpoint file, then empties the log<br>
+	 * Appending is held off meanwhile, the image replacing the previous one atomically. Every pending record is made
+	 * durable first, so that the log is a prefix of the image : a crash before the log is emptied replays records the
+	 * image already holds, which changes nothing
+	 * @throws IOException if the files can't be written
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (io) {
+			synchronized (this) {
+				buffer.flip();
+				try {
+					write_(buffer);
+				} catch (IOException | RuntimeException e) {
+					buffer.position(buffer.limit()).limit(buffer.capacity()); /* appending goes on after them */
+					throw e;
+				}
+				buffer.clear();
+				durable = appended;
+				File tmp = new File(checkpoint.getPath() + ".tmp");
+				save(memory, tmp);
+				Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				sync_dir(checkpoint); /* the move itself is durable */
+				channel.truncate(0);
+				channel.force(true);
+			}
+		}
+	}
+
+	/**
+	 * Forces the directory holding a file, so that a file moved into it survives a crash
+	 * @param file The file
+	 * @throws IOException if the directory can't be forced
+	 */
+	private static void sync_dir(File file) throws IOException {
+		try (FileChannel dir = FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ)) {
+			dir.force(true);
+		}
+	}
+
+	/**
+	 * Commits, detaches the journal from its memory and closes the log
+	 * @throws IOException if the log can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			commit();
+		} finally {
+			synchronized (memory) {
+				if (memory.journal == this) memory.journal = null;
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return The number of bytes appended but not durable yet
+	 */
+	public synchronized long pending() {
+		return appended - durable;
+	}
+
+	/*
+	 * Checkpoints and recovery
+	 */
+
+	/**
+	 * Writes a memory's image : magic, size, flag words, then data
+	 * @param memory The memory to save
+	 * @param file The file to write
+	 * @throws IOException if the file can't be written
+	 */
+	static void save(Memory memory, File file) throws IOException {
+		try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE);
+			chunk.putLong(MAGIC).putLong(memory.capacity());
+			for (int i = 0, words = memory.words(); i < words; i++) {
+				if (!chunk.hasRemaining()) drain(out, chunk);
+				chunk.putLong(memory.word_(i));
+			}
+			drain(out, chunk);
+			for (long ptr = 0, size = memory.capacity(); ptr < size;) {
+				int n = (int) Math.min(chunk.capacity(), size - ptr);
+				memory.get_(ptr, chunk.array(), 0, n);
+				chunk.position(n);
+				drain(out, chunk);
+				ptr += n;
+			}
+			out.force(true);
+		}
+	}
+
+	private static void drain(FileChannel out, ByteBuffer chunk) throws IOException {
+		chunk.flip();
+		while (chunk.hasRemaining())
+			out.write(chunk);
+		chunk.clear();
+	}
+
+	/**
+	 * Loads a memory's image
+	 * @param memory The memory to load into
+	 * @param file The file to read
+	 * @throws IOException if the file isn't a checkpoint of the memory's size
+	 */
+	static void load(Memory memory, File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16))) {
+			if (in.readLong() != MAGIC) throw new IOException(file + " isn't a memory checkpoint");
+			long size = in.readLong();
+			fit_(memory, size);
+			if (size != memory.capacity()) throw new IOException("Checkpoint of " + size + " bytes, memory of " + memory.capacity());
+			for (int i = 0, words = memory.words(); i < words; i++)
+				memory.fill_words(i, i + 1, in.readLong());
+			byte[] chunk = new byte[1 << 16];
+			for (long ptr = 0; ptr < size;) {
+				int n = (int) Math.min(chunk.length, size - ptr);
+				in.readFully(chunk, 0, n);
+				memory.put_(ptr, chunk, 0, n);
+				ptr += n;
+			}
+		}
+	}
+
+	/**
+	 * Replays a log's records on a memory, up to the last whole one
+	 * @param memory The memory to replay onto
+	 * @param channel The log
+	 * @return The offset past the last whole record
+	 * @throws IOException if the log can't be read
+	 */
+	static long replay(Memory memory, FileChannel channel) throws IOException {
+		channel.position(0);
+		InputStream stream = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+		DataInputStream in = new DataInputStream(stream);
+		CRC32C crc = new CRC32C();
+		byte[] header = new byte[HEADER];
+		byte[] bytes = new byte[0];
+		long offset = 0;
+		try {
+			for (;;) {
+				in.readFully(header);
+				ByteBuffer fields = ByteBuffer.wrap(header);
+				byte type = fields.get();
+				long ptr = fields.getLong(), size = fields.getLong();
+				if (type < WRITE || type > ALLOC || ptr < 0 || size <= 0 || (type == WRITE && size > RECORD_SIZE)) break; /* corrupt */
+				int n = (type == WRITE) ? (int) size : 0;
+				if (bytes.length < n) bytes = new byte[n];
+				in.readFully(bytes, 0, n);
+				crc.reset();
+				crc.update(header);
+				crc.update(bytes, 0, n);
+				if (in.readInt() != (int) crc.getValue()) break; /* torn or corrupt */
+				fit_(memory, ptr + size); /* a whole record, never dropped */
+				if (type == WRITE) {
+					memory.put_(ptr, bytes, 0, n);
+					Memory.flag_range(memory, ptr, size, true);
+				} else {
+					memory.fill_(ptr, size, (byte) 0x0);
+					Memory.flag_range(memory, ptr, size, type == ALLOC);
+				}
+				offset += HEADER + n + Integer.BYTES;
+			}
+		} catch (EOFException e) {
+			/* the log ends here */
+		}
+		return offset;
+	}
+
+	/**
+	 * Makes sure a memory reaches a size, growing it if it's paged
+	 * @param memory The memory to recover into
+	 * @param size The size it has to reach
+	 * @throws IOException if the memory can't reach it
+	 */
+	private static void fit_(Memory memory, long size) throws IOException {
+		if (size <= memory.capacity()) return;
+		if (memory instanceof PagedMemory) try {
+			((PagedMemory) memory).grow(size - memory.capacity());
+			return;
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Memory can't grow to the " + size + " bytes recovery needs", e);
+		}
+		throw new IOException("Recovery needs " + size + " bytes, memory of " + memory.capacity());
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 codec for pages, in the spirit of LZ4 : no entropy coding, matches found through a single hash probe<br>
+ * A block is a sequence of runs, each one made of a token (literal count in the high nibble, match length - 4 in the
+ * low one, 15 meaning more bytes follow, each adding up to 255), the literals, then a big-endian 2-byte backward
+ * offset and the match length's extra bytes. The last run has literals only<br>
+ * <b>Packing a page :</b><br>
+ * 
+ * <pre>
+ * int n = codec.compress(page, page.length, scratch);
+ * if (n != -1) packed = Arrays.copyOf(scratch, n);
+ * MemoryLZ.decompress(packed, page);
+ * </pre>
+ * 
+ * @see PagedMemory#compress()
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+final class MemoryLZ {
+
+	static final int MIN_MATCH = 4;
+
+	static final int MAX_OFFSET = 0xffff;
+
+	private static final int HASH_BITS = 12;
+
+	private final int[] table = new int[1 << HASH_BITS];	/* the last position of each hashed 4-byte sequence */
+
+	/**
+	 * Compresses a block
+	 * @param src The bytes to compress
+	 * @param len The number of bytes to compress, from the start of src
+	 * @param dst The array to compress into, whose length is the largest acceptable result
+	 * @return The compressed size<br>
+	 *         <b>-1</b> if it wouldn't fit in dst
+	 */
+	int compress(byte[] src, int len, byte[] dst) {
+		Arrays.fill(table, -1);
+		int ip = 0, anchor = 0, op = 0, limit = len - MIN_MATCH, misses = 0;
+		while (ip <= limit) {
+			int sequence = (int) MemoryAccess.INT.get(src, ip);
+			int h = (sequence * 0x9e3779b1) >>> (32 - HASH_BITS);
+			int ref = table[h];
+			table[h] = ip;
+			if (ref < 0 || ip - ref > MAX_OFFSET || (int) MemoryAccess.INT.get(src, ref) != sequence) {
+				ip += 1 + (misses++ >>> 5); /* skips faster through incompressible bytes */
+				continue;
+			}
+			misses = 0;
+			int length = MIN_MATCH;
+			while (ip + length < len && src[ref + length] == src[ip + length])
+				length++;
+			op = run_(src, anchor, ip - anchor, ip - ref, length, dst, op);
+			if (op < 0) return -1;
+			ip += length;
+			anchor = ip;
+		}
+		return run_(src, anchor, len - anchor, 0, 0, dst, op);
+	}
+
+	/**
+	 * Writes a run, or the last one if it has no match
+	 * @return The position past the run in dst<br>
+	 *         <b>-1</b> if it doesn't fit
+	 */
+	private static int run_(byte[] src, int from, int literals, int offset, int length, byte[] dst, int op) {
+		int extra = length - MIN_MATCH;
+		if (op + 1 + literals + literals / 255 + 1 + ((length > 0) ? 2 + extra / 255 + 1 : 0) > dst.length) return -1;
+		int token = op++;
+		dst[token] = (byte) (Math.min(literals, 15) << 4);
+		if (literals >= 15) op = count_(literals - 15, dst, op);
+		System.arraycopy(src, from, dst, op, literals);
+		op += literals;
+		if (length == 0) return op;
+		dst[token] |= (byte) Math.min(extra, 15);
+		dst[op++] = (byte) (offset >>> 8);
+		dst[op++] = (byte) offset;
+		if (extra >= 15) op = count_(extra - 15, dst, op);
+		return op;
+	}
+
+	private static int count_(int count, byte[] dst, int op) {
+		for (; count >= 255; count -= 255)
+			dst[op++] = (byte) 255;
+		dst[op++] = (byte) count;
+		return op;
+	}
+
+	/**
+	 * Decompresses a block
+	 * @param src The compressed block
+	 * @param dst The array to decompress into, at least as long as the original block
+	 * @return The decompressed size
+	 */
+	static int decompress(byte[] src, byte[] dst) {
+		int ip = 0, op = 0;
+		while (ip < src.length) {
+			int token = src[ip++] & 0xff;
+			int literals = token >>> 4;
+			if (literals == 15) {
+				int b;
+				do
+					literals += b = src[ip++] & 0xff;
+				while (b == 255);
+			}
+			System.arraycopy(src, ip, dst, op, literals);
+			ip += literals;
+			op += literals;
+			if (ip == src.length) break; /* the last run */
+			int offset = (src[ip++] & 0xff) << 8 | (src[ip++] & 0xff);
+			int length = token & 15;
+			if (length == 15) {
+				int b;
+				do
+					length += b = src[ip++] & 0xff;
+				while (b == 255);
+			}
+			length += MIN_MATCH;
+			int ref = op - offset;
+			if (offset >= length) System.arraycopy(dst, ref, dst, op, length);
+			else for (int i = 0; i < length; i++) /* overlapping : repeats the last offset bytes */
+				dst[op + i] = dst[ref + i];
+			op += length;
+		}
+		return op;
+	}
+
+}
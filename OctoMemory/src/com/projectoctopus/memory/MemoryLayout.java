@@ -0,0 +1,238 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * A record's layout : its fields, declared once, each one at an offset aligned to its type's size<br>
+ * The record's size is padded to its largest alignment, so that records can be laid end to end in an array<br>
+ * <b>Declaring and using a layout :</b><br>
+ * 
+ * <pre>
+ * MemoryLayout layout = new MemoryLayout();
+ * MemoryLayout.Field id = layout.add("id", MemoryLayout.Type.LONG);
+ * MemoryLayout.Field tags = layout.add("tags", MemoryLayout.Type.SHORT, 4);
+ * long records = layout.allocate(memory, count);
+ * MemoryStruct struct = layout.view(memory, records);
+ * for (long i = 0; i < count; i++)
+ * 	sum += struct.index(i).read_long(id);
+ * </pre>
+ * 
+ * A layout is sealed by its first view or allocation, no field can be added past it
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryLayout {
+
+	/**
+	 * The primitive types of a field
+	 */
+	public static enum Type {
+		BOOL(1), BYTE(1), CHAR(2), SHORT(2), INT(4), FLOAT(4), LONG(8), DOUBLE(8);
+
+		private final int size;
+
+		private Type(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * @return The type's size (and alignment) in bytes
+		 */
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * A field of a layout, to read and write it through a {@link MemoryStruct}
+	 */
+	public static final class Field {
+
+		final String	name;
+		final Type		type;
+		final int		length;
+		final long		offset;
+
+		private Field(String name, Type type, int length, long offset) {
+			this.name = name;
+			this.type = type;
+			this.length = length;
+			this.offset = offset;
+		}
+
+		/**
+		 * @return The field's name
+		 */
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * @return The field's type
+		 */
+		public Type type() {
+			return type;
+		}
+
+		/**
+		 * @return The field's number of elements (1 if it isn't an array)
+		 */
+		public int length() {
+			return length;
+		}
+
+		/**
+		 * @return The field's offset in its record
+		 */
+		public long offset() {
+			return offset;
+		}
+
+		@Override
+		public String toString() {
+			return name + ":" + type + (length == 1 ? "" : "[" + length + "]") + "@" + offset;
+		}
+	}
+
+	private final List<Field>	fields	= new ArrayList<>();
+	private long				end;			/* the end of the last field */
+	private int					alignment	= 1;
+	private boolean				sealed;
+
+	/**
+	 * Declares a field
+	 * @param name The field's name
+	 * @param type The field's type
+	 * @return The field
+	 * @see #add(String, Type, int)
+	 */
+	public Field add(String name, Type type) {
+		return add(name, type, 1);
+	}
+
+	/**
+	 * Declares an array field, aligned to its elements' size after the previous field
+	 * @param name The field's name
+	 * @param type The elements' type
+	 * @param length The number of elements
+	 * @return The field
+	 * @throws IllegalStateException if the layout is sealed
+	 * @throws IllegalArgumentException if the name is taken or the length isn't positive
+	 */
+	public synchronized Field add(String name, Type type, int length) {
+		if (sealed) throw new IllegalStateException("Layout already in use");
+		if (length <= 0) throw new IllegalArgumentException("Field length must be positive");
+		if (field(name) != null) throw new IllegalArgumentException("Field " + name + " already declared");
+		long offset = align_(end, type.size);
+		Field field = new Field(name, type, length, offset);
+		fields.add(field);
+		end = offset + (long) length * type.size;
+		alignment = Math.max(alignment, type.size);
+		return field;
+	}
+
+	/**
+	 * Rounds an offset up to an alignment
+	 * @param offset The offset
+	 * @param alignment A power of two
+	 * @return The aligned offset
+	 */
+	private static long align_(long offset, int alignment) {
+		return offset + alignment - 1 & -alignment;
+	}
+
+	/**
+	 * Gives a field by its name
+	 * @param name The field's name
+	 * @return The field<br>
+	 *         <b>null</b> if there's no such field
+	 */
+	public synchronized Field field(String name) {
+		for (Field field : fields)
+			if (field.name.equals(name)) return field;
+		return null;
+	}
+
+	/**
+	 * @return The declared fields, in order
+	 */
+	public synchronized List<Field> fields() {
+		return new ArrayList<>(fields);
+	}
+
+	/**
+	 * @return The size of a record, padded to its alignment
+	 */
+	public synchronized long size() {
+		return align_(end, alignment);
+	}
+
+	/**
+	 * @return The alignment of a record, its largest field type's size
+	 */
+	public synchronized int alignment() {
+		return alignment;
+	}
+
+	/**
+	 * Seals the layout
+	 * @return The size of a record
+	 * @throws IllegalStateException if the layout has no field
+	 */
+	private synchronized long seal() {
+		if (fields.isEmpty()) throw new IllegalStateException("Layout has no field");
+		sealed = true;
+		return size();
+	}
+
+	/**
+	 * Allocates an array of records in a memory, zeroed
+	 * @param memory The memory to allocate into
+	 * @param count The number of records
+	 * @return A pointer to the first record
+	 * @throws MemoryException if no free range fits the records
+	 */
+	public long allocate(Memory memory, long count) throws MemoryException {
+		return m_alloc(memory, Math.multiplyExact(seal(), count));
+	}
+
+	/**
+	 * Gives a flyweight over an array of records, on its first one
+	 * @param memory The memory holding the records
+	 * @param base A pointer to the first record
+	 * @return A new view
+	 */
+	public MemoryStruct view(Memory memory, long base) {
+		return new MemoryStruct(memory, this, seal(), base);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return fields + " (" + size() + " bytes)";
+	}
+
+}
@@ -20,18 +20,28 @@
 package com.projectoctopus.memory;
 
 /**
- * A toolkit for reading a source's data
+ * A toolkit for reading a source's data<br>
+ * Primitives are read in the memory's byte order (big-endian by default, see {@link Memory#m_order}), each one in a
+ * single access (the <code>byte[]</code> overloads read big-endian)<br>
+ * Arrays are read at their elements' stride, either into a new array or into a given one (without allocating)<br>
+ * Strings are read as a varint UTF-8 length followed by their UTF-8 bytes, see {@link MemoryUTF8}<br>
+ * A memory is read through its backend, so the <code>Memory</code> overloads work the same whatever holds its data
  * @author Theophile Dano, Spriithy 2015
  * @since 0.1
  */
 public class MemoryReader {
 
-	private Memory memory;
+	private volatile Memory memory;
 
 	private boolean linked = false;
 
-	public void link(Memory memory) {
-		assert(!linked);
+	/**
+	 * Links this toolkit to a memory, once and for all
+	 * @param memory The memory to operate with
+	 * @throws IllegalStateException if already linked
+	 */
+	public synchronized void link(Memory memory) {
+		if (linked) throw new IllegalStateException("Already linked to a memory");
 		linked = true;
 		this.memory = memory;
 	}
@@ -43,180 +53,378 @@ public class MemoryReader {
 
 	public static boolean[] read_bool_array(byte[] source, int ptr, int size) {
 		boolean[] array = new boolean[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_bool(source, p);
+		read_bool_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_bool_array(byte[] source, int ptr, boolean[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_bool(source, ptr + i * Byte.BYTES);
+		return ptr + len * Byte.BYTES;
+	}
+
 	public static byte read_byte(byte[] source, int ptr) {
 		return (byte) (0xff & source[ptr]);
 	}
 
 	public static byte[] read_byte_array(byte[] source, int ptr, int size) {
 		byte[] array = new byte[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_byte(source, p);
+		read_byte_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_byte_array(byte[] source, int ptr, byte[] dst, int off, int len) {
+		System.arraycopy(source, ptr, dst, off, len);
+		return ptr + len * Byte.BYTES;
+	}
+
 	public static char read_char(byte[] source, int ptr) {
-		return (char) ((0xff & source[ptr++]) << 8 | (0xff & source[ptr]));
+		return (char) MemoryAccess.CHAR.get(source, ptr);
 	}
 
 	public static char[] read_char_array(byte[] source, int ptr, int size) {
 		char[] array = new char[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_char(source, p);
+		read_char_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_char_array(byte[] source, int ptr, char[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_char(source, ptr + i * Character.BYTES);
+		return ptr + len * Character.BYTES;
+	}
+
 	public static double read_double(byte[] source, int ptr) {
-		return Double.longBitsToDouble(read_long(source, ptr));
+		return (double) MemoryAccess.DOUBLE.get(source, ptr);
 	}
 
 	public static double[] read_double_array(byte[] source, int ptr, int size) {
 		double[] array = new double[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_double(source, p);
+		read_double_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_double_array(byte[] source, int ptr, double[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_double(source, ptr + i * Double.BYTES);
+		return ptr + len * Double.BYTES;
+	}
+
 	public static float read_float(byte[] source, int ptr) {
-		return Float.intBitsToFloat(read_int(source, ptr));
+		return (float) MemoryAccess.FLOAT.get(source, ptr);
 	}
 
 	public static float[] read_float_array(byte[] source, int ptr, int size) {
 		float[] array = new float[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_float(source, p);
+		read_float_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_float_array(byte[] source, int ptr, float[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_float(source, ptr + i * Float.BYTES);
+		return ptr + len * Float.BYTES;
+	}
+
 	public static int read_int(byte[] source, int ptr) {
-		return (int) ((int) (0xff & source[ptr++]) << 24 |
-				(int) (0xff & source[ptr++]) << 16 |
-				(int) (0xff & source[ptr++]) << 8 |
-				(int) (0xff & source[ptr++]) << 0);
+		return (int) MemoryAccess.INT.get(source, ptr);
 	}
 
 	public static int[] read_int_array(byte[] source, int ptr, int size) {
 		int[] array = new int[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_int(source, p);
+		read_int_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_int_array(byte[] source, int ptr, int[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_int(source, ptr + i * Integer.BYTES);
+		return ptr + len * Integer.BYTES;
+	}
+
 	public static long read_long(byte[] source, int ptr) {
-		return (long) ((long) (0xff & source[ptr++]) << 56 | (long) (0xff & source[ptr++]) << 48 |
-				(long) (0xff & source[ptr++]) << 40 | (long) (0xff & source[ptr++]) << 32 |
-				(long) (0xff & source[ptr++]) << 24 | (long) (0xff & source[ptr++]) << 16 |
-				(long) (0xff & source[ptr++]) << 8 | (long) (0xff & source[ptr++]) << 0);
+		return (long) MemoryAccess.LONG.get(source, ptr);
 	}
 
 	public static long[] read_long_array(byte[] source, int ptr, int size) {
 		long[] array = new long[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_long(source, p);
+		read_long_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_long_array(byte[] source, int ptr, long[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_long(source, ptr + i * Long.BYTES);
+		return ptr + len * Long.BYTES;
+	}
+
 	public static short read_short(byte[] source, int ptr) {
-		return (short) ((0xff & source[ptr++]) << 8 | (0xff & source[ptr]));
+		return (short) MemoryAccess.SHORT.get(source, ptr);
 	}
 
 	public static short[] read_short_array(byte[] source, int ptr, int size) {
 		short[] array = new short[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_short(source, p);
+		read_short_array(source, ptr, array, 0, size);
 		return array;
 	}
 
+	public static int read_short_array(byte[] source, int ptr, short[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_short(source, ptr + i * Short.BYTES);
+		return ptr + len * Short.BYTES;
+	}
+
 	public static String read_string(byte[] source, int ptr) {
-		short size = read_short(source, ptr++);
-		return new String(read_byte_array(source, ++ptr, size));
+		return MemoryUTF8.decode(source, ptr);
 	}
 
 	public static String[] read_string_array(byte[] source, int ptr, int size) {
 		String[] array = new String[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_string(source, p);
+		for (int i = 0; i < size; i++) {
+			array[i] = read_string(source, ptr);
+			ptr = MemoryUTF8.skip(source, ptr); /* skips the string's length and bytes */
+		}
+		return array;
+	}
+
+	public static boolean read_bool(Memory memory, long ptr) {
+		byte value = memory.get_(ptr);
+		assert(value == 0 || value == 1);
+		return value != 0;
+	}
+
+	public static boolean[] read_bool_array(Memory memory, long ptr, int size) {
+		boolean[] array = new boolean[size];
+		read_bool_array(memory, ptr, array, 0, size);
+		return array;
+	}
+
+	public static long read_bool_array(Memory memory, long ptr, boolean[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = read_bool(memory, ptr + i);
+		return ptr + (long) len * Byte.BYTES;
+	}
+
+	public static byte read_byte(Memory memory, long ptr) {
+		return memory.get_(ptr);
+	}
+
+	public static byte[] read_byte_array(Memory memory, long ptr, int size) {
+		byte[] array = new byte[size];
+		read_byte_array(memory, ptr, array, 0, size);
 		return array;
 	}
 
-	public boolean read_bool(int ptr) {
-		return read_bool(memory.data, ptr);
+	public static long read_byte_array(Memory memory, long ptr, byte[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Byte.BYTES;
 	}
 
-	public boolean[] read_bool_array(int ptr, int size) {
-		return read_bool_array(memory.data, ptr, size);
+	public static char read_char(Memory memory, long ptr) {
+		return memory.get_char(ptr);
 	}
 
-	public byte read_byte(int ptr) {
-		return read_byte(memory.data, ptr);
+	public static char[] read_char_array(Memory memory, long ptr, int size) {
+		char[] array = new char[size];
+		read_char_array(memory, ptr, array, 0, size);
+		return array;
 	}
 
-	public byte[] read_byte_array(int ptr, int size) {
-		return read_byte_array(memory.data, ptr, size);
+	public static long read_char_array(Memory memory, long ptr, char[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Character.BYTES;
 	}
 
-	public char read_char(int ptr) {
-		return read_char(memory.data, ptr);
+	public static double read_double(Memory memory, long ptr) {
+		return Double.longBitsToDouble(memory.get_long(ptr));
 	}
 
-	public char[] read_char_array(int ptr, int size) {
-		return read_char_array(memory.data, ptr, size);
+	public static double[] read_double_array(Memory memory, long ptr, int size) {
+		double[] array = new double[size];
+		read_double_array(memory, ptr, array, 0, size);
+		return array;
 	}
 
-	public double read_double(int ptr) {
-		return read_double(memory.data, ptr);
+	public static long read_double_array(Memory memory, long ptr, double[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Double.BYTES;
 	}
 
-	public double[] read_double_array(int ptr, int size) {
-		return read_double_array(memory.data, ptr, size);
+	public static float read_float(Memory memory, long ptr) {
+		return Float.intBitsToFloat(memory.get_int(ptr));
 	}
 
-	public float read_float(int ptr) {
-		return read_float(memory.data, ptr);
+	public static float[] read_float_array(Memory memory, long ptr, int size) {
+		float[] array = new float[size];
+		read_float_array(memory, ptr, array, 0, size);
+		return array;
 	}
 
-	public float[] read_float_array(int ptr, int size) {
-		return read_float_array(memory.data, ptr, size);
+	public static long read_float_array(Memory memory, long ptr, float[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Float.BYTES;
 	}
 
-	public int read_int(int ptr) {
-		return read_int(memory.data, ptr);
+	public static int read_int(Memory memory, long ptr) {
+		return memory.get_int(ptr);
 	}
 
-	public int[] read_int_array(int ptr, int size) {
-		return read_int_array(memory.data, ptr, size);
+	public static int[] read_int_array(Memory memory, long ptr, int size) {
+		int[] array = new int[size];
+		read_int_array(memory, ptr, array, 0, size);
+		return array;
 	}
 
-	public long read_long(int ptr) {
-		return read_long(memory.data, ptr);
+	public static long read_int_array(Memory memory, long ptr, int[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Integer.BYTES;
 	}
 
-	public long[] read_long_array(int ptr, int size) {
-		return read_long_array(memory.data, ptr, size);
+	public static long read_long(Memory memory, long ptr) {
+		return memory.get_long(ptr);
 	}
 
-	public short read_short(int ptr) {
-		return read_short(memory.data, ptr);
+	public static long[] read_long_array(Memory memory, long ptr, int size) {
+		long[] array = new long[size];
+		read_long_array(memory, ptr, array, 0, size);
+		return array;
+	}
+
+	public static long read_long_array(Memory memory, long ptr, long[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Long.BYTES;
+	}
+
+	public static short read_short(Memory memory, long ptr) {
+		return memory.get_short(ptr);
 	}
 
-	public short[] read_short_array(int ptr, int size) {
-		return read_short_array(memory.data, ptr, size);
+	public static short[] read_short_array(Memory memory, long ptr, int size) {
+		short[] array = new short[size];
+		read_short_array(memory, ptr, array, 0, size);
+		return array;
+	}
+
+	public static long read_short_array(Memory memory, long ptr, short[] dst, int off, int len) {
+		memory.get_(ptr, dst, off, len);
+		return ptr + (long) len * Short.BYTES;
 	}
 
-	public String read_string(int ptr) {
-		short size = read_short(memory.data, ptr++);
-		return new String(read_byte_array(memory.data, ++ptr, size));
+	public static String read_string(Memory memory, long ptr) {
+		return MemoryUTF8.decode(memory, ptr);
 	}
 
-	public String[] read_string_array(int ptr, int size) {
+	public static String[] read_string_array(Memory memory, long ptr, int size) {
 		String[] array = new String[size];
-		for (int p = ptr; p < ptr + size; p++)
-			array[p - ptr] = read_string(memory.data, p);
+		for (int i = 0; i < size; i++) {
+			array[i] = read_string(memory, ptr);
+			ptr = MemoryUTF8.skip(memory, ptr); /* skips the string's length and bytes */
+		}
 		return array;
 	}
 
+	public boolean read_bool(long ptr) {
+		return read_bool(memory, ptr);
+	}
+
+	public boolean[] read_bool_array(long ptr, int size) {
+		return read_bool_array(memory, ptr, size);
+	}
+
+	public long read_bool_array(long ptr, boolean[] dst, int off, int len) {
+		return read_bool_array(memory, ptr, dst, off, len);
+	}
+
+	public byte read_byte(long ptr) {
+		return read_byte(memory, ptr);
+	}
+
+	public byte[] read_byte_array(long ptr, int size) {
+		return read_byte_array(memory, ptr, size);
+	}
+
+	public long read_byte_array(long ptr, byte[] dst, int off, int len) {
+		return read_byte_array(memory, ptr, dst, off, len);
+	}
+
+	public char read_char(long ptr) {
+		return read_char(memory, ptr);
+	}
+
+	public char[] read_char_array(long ptr, int size) {
+		return read_char_array(memory, ptr, size);
+	}
+
+	public long read_char_array(long ptr, char[] dst, int off, int len) {
+		return read_char_array(memory, ptr, dst, off, len);
+	}
+
+	public double read_double(long ptr) {
+		return read_double(memory, ptr);
+	}
+
+	public double[] read_double_array(long ptr, int size) {
+		return read_double_array(memory, ptr, size);
+	}
+
+	public long read_double_array(long ptr, double[] dst, int off, int len) {
+		return read_double_array(memory, ptr, dst, off, len);
+	}
+
+	public float read_float(long ptr) {
+		return read_float(memory, ptr);
+	}
+
+	public float[] read_float_array(long ptr, int size) {
+		return read_float_array(memory, ptr, size);
+	}
+
+	public long read_float_array(long ptr, float[] dst, int off, int len) {
+		return read_float_array(memory, ptr, dst, off, len);
+	}
+
+	public int read_int(long ptr) {
+		return read_int(memory, ptr);
+	}
+
+	public int[] read_int_array(long ptr, int size) {
+		return read_int_array(memory, ptr, size);
+	}
+
+	public long read_int_array(long ptr, int[] dst, int off, int len) {
+		return read_int_array(memory, ptr, dst, off, len);
+	}
+
+	public long read_long(long ptr) {
+		return read_long(memory, ptr);
+	}
+
+	public long[] read_long_array(long ptr, int size) {
+		return read_long_array(memory, ptr, size);
+	}
+
+	public long read_long_array(long ptr, long[] dst, int off, int len) {
+		return read_long_array(memory, ptr, dst, off, len);
+	}
+
+	public short read_short(long ptr) {
+		return read_short(memory, ptr);
+	}
+
+	public short[] read_short_array(long ptr, int size) {
+		return read_short_array(memory, ptr, size);
+	}
+
+	public long read_short_array(long ptr, short[] dst, int off, int len) {
+		return read_short_array(memory, ptr, dst, off, len);
+	}
+
+	public String read_string(long ptr) {
+		return read_string(memory, ptr);
+	}
+
+	public String[] read_string_array(long ptr, int size) {
+		return read_string_array(memory, ptr, size);
+	}
+
 }
@@ -0,0 +1,113 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.util.Arrays;
+
+/**
+ * The runs of bytes a compaction moved, so that the pointers into them can be fixed up<br>
+ * <b>Fixing a pointer up :</b><br>
+ * 
+ * <pre>
+ * MemoryRelocation moved = Memory.m_compact(memory, 0);
+ * ptr = moved.relocate(ptr);
+ * </pre>
+ * 
+ * @see Memory#m_compact(Memory, long)
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryRelocation {
+
+	private long[]	from	= new long[8];
+	private long[]	to		= new long[8];
+	private long[]	size	= new long[8];
+	private int		count;
+
+	/**
+	 * Records a moved run (runs are recorded by increasing old pointer)
+	 * @param from The run's old pointer
+	 * @param to The run's new pointer
+	 * @param size The run's size in bytes
+	 */
+	void add(long from, long to, long size) {
+		if (count == this.from.length) {
+			this.from = Arrays.copyOf(this.from, count << 1);
+			this.to = Arrays.copyOf(this.to, count << 1);
+			this.size = Arrays.copyOf(this.size, count << 1);
+		}
+		this.from[count] = from;
+		this.to[count] = to;
+		this.size[count++] = size;
+	}
+
+	/**
+	 * Gives the new pointer of a byte
+	 * @param ptr The byte's pointer before the compaction
+	 * @return The byte's pointer after the compaction (ptr itself if it didn't move)
+	 */
+	public long relocate(long ptr) {
+		int run = Arrays.binarySearch(from, 0, count, ptr);
+		if (run < 0) run = -run - 2; /* the last run starting before ptr */
+		if (run < 0 || ptr >= from[run] + size[run]) return ptr; /* not in a moved run */
+		return to[run] + (ptr - from[run]);
+	}
+
+	/**
+	 * Gives the new pointer of a byte
+	 * @param ptr The byte's pointer before the compaction
+	 * @return The byte's pointer after the compaction (ptr itself if it didn't move)
+	 */
+	public int relocate(int ptr) {
+		return (int) relocate((long) ptr);
+	}
+
+	/**
+	 * @return The number of moved runs
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * @param run The run's index
+	 * @return The run's old pointer
+	 */
+	public long from(int run) {
+		return from[run];
+	}
+
+	/**
+	 * @param run The run's index
+	 * @return The run's new pointer
+	 */
+	public long to(int run) {
+		return to[run];
+	}
+
+	/**
+	 * @param run The run's index
+	 * @return The run's size in bytes
+	 */
+	public long size(int run) {
+		return size[run];
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The allocation statistics of a memory, counted as allocations happen so that reading them never scans the memory<br>
+ * Call counts and the size histogram are kept by {@link Memory#m_alloc} and {@link Memory#m_free}, free bytes and the
+ * largest free block are read off the allocator's free extents<br>
+ * <b>Polling a memory :</b><br>
+ * 
+ * <pre>
+ * Memory.m_stats(memory).register("cache"); // com.projectoctopus.memory:type=Memory,name=cache
+ * MemoryStats.Snapshot snapshot = Memory.m_stats(memory).snapshot();
+ * </pre>
+ * 
+ * Bytes written outside of any allocation are counted as allocated once the allocator comes across them<br>
+ * Reading free bytes or the largest free block takes the lock the allocating threads hold (the allocator's monitor,
+ * or each stripe's lock of a {@link ConcurrentMemory}), so that the statistics may be polled from any thread
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public final class MemoryStats implements MemoryStatsMXBean {
+
+	/**
+	 * A memory's statistics at a point in time
+	 */
+	public static final class Snapshot {
+
+		private final long		capacity, free, largest, allocs, failures, frees;
+		private final long[]	histogram;
+
+		private Snapshot(long capacity, long free, long largest, long allocs, long failures, long frees, long[] histogram) {
+			this.capacity = capacity;
+			this.free = free;
+			this.largest = largest;
+			this.allocs = allocs;
+			this.failures = failures;
+			this.frees = frees;
+			this.histogram = histogram;
+		}
+
+		public long capacity() {
+			return capacity;
+		}
+
+		public long allocated_bytes() {
+			return capacity - free;
+		}
+
+		public long free_bytes() {
+			return free;
+		}
+
+		public long largest_free_block() {
+			return largest;
+		}
+
+		public double fragmentation() {
+			return fragmentation_(free, largest);
+		}
+
+		public long alloc_count() {
+			return allocs;
+		}
+
+		public long failed_alloc_count() {
+			return failures;
+		}
+
+		public long free_count() {
+			return frees;
+		}
+
+		public long[] alloc_size_histogram() {
+			return histogram.clone();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%d bytes allocated, %d free (largest %d, fragmentation %.3f), %d allocs (%d failed), %d frees",
+					allocated_bytes(), capacity, free, largest, fragmentation(), allocs, failures, frees);
+		}
+	}
+
+	private final Memory		memory;
+	private final LongAdder		allocs		= new LongAdder();
+	private final LongAdder		failures	= new LongAdder();
+	private final LongAdder		frees		= new LongAdder();
+	private final LongAdder[]	histogram	= new LongAdder[MemoryAllocator.CLASSES];
+
+	MemoryStats(Memory memory) {
+		this.memory = memory;
+		for (int c = 0; c < histogram.length; c++)
+			histogram[c] = new LongAdder();
+	}
+
+	/**
+	 * Counts an allocation
+	 * @param size The allocated size
+	 */
+	void alloc(long size) {
+		allocs.increment();
+		histogram[63 - Long.numberOfLeadingZeros(size)].increment();
+	}
+
+	/**
+	 * Counts an allocation that found no fitting range
+	 */
+	void fail() {
+		failures.increment();
+	}
+
+	/**
+	 * Counts a free
+	 */
+	void free() {
+		frees.increment();
+	}
+
+	private static double fragmentation_(long free, long largest) {
+		return (free == 0) ? 0 : Math.max(0, 1 - (double) largest / free);
+	}
+
+	/**
+	 * Takes the current statistics
+	 * @return A new snapshot
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(memory.capacity(), memory.free_bytes(), memory.largest_free(), allocs.sum(), failures.sum(),
+				frees.sum(), getAllocSizeHistogram());
+	}
+
+	/**
+	 * Registers these statistics with the platform MBean server
+	 * @param name The memory's name
+	 * @return The MBean's name, <code>com.projectoctopus.memory:type=Memory,name=</code><b>name</b>
+	 * @throws IllegalStateException if the name is taken or invalid
+	 */
+	public ObjectName register(String name) {
+		try {
+			ObjectName object = new ObjectName("com.projectoctopus.memory", "type", "Memory");
+			object = ObjectName.getInstance(object.getCanonicalName() + ",name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, object);
+			return object;
+		} catch (JMException e) {
+			throw new IllegalStateException("Couldn't register memory " + name, e);
+		}
+	}
+
+	/**
+	 * Unregisters these statistics from the platform MBean server
+	 * @param object The name given by {@link #register(String)}
+	 */
+	public void unregister(ObjectName object) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(object);
+		} catch (JMException e) {
+			throw new IllegalStateException("Couldn't unregister " + object, e);
+		}
+	}
+
+	@Override
+	public long getCapacity() {
+		return memory.capacity();
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return memory.capacity() - memory.free_bytes();
+	}
+
+	@Override
+	public long getFreeBytes() {
+		return memory.free_bytes();
+	}
+
+	@Override
+	public long getLargestFreeBlock() {
+		return memory.largest_free();
+	}
+
+	@Override
+	public double getFragmentation() {
+		return fragmentation_(memory.free_bytes(), memory.largest_free());
+	}
+
+	@Override
+	public long getAllocCount() {
+		return allocs.sum();
+	}
+
+	@Override
+	public long getFailedAllocCount() {
+		return failures.sum();
+	}
+
+	@Override
+	public long getFreeCount() {
+		return frees.sum();
+	}
+
+	@Override
+	public long[] getAllocSizeHistogram() {
+		long[] counts = new long[histogram.length];
+		for (int c = 0; c < counts.length; c++)
+			counts[c] = histogram[c].sum();
+		return counts;
+	}
+
+	@Override
+	public String toString() {
+		return snapshot() + " " + Arrays.toString(getAllocSizeHistogram());
+	}
+
+}
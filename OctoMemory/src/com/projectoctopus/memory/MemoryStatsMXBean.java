@@ -0,0 +1,75 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+/**
+ * The management interface of a memory's statistics, see {@link MemoryStats#register(String)}
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public interface MemoryStatsMXBean {
+
+	/**
+	 * @return The memory's size in bytes
+	 */
+	long getCapacity();
+
+	/**
+	 * @return The number of bytes out of the free extents
+	 */
+	long getAllocatedBytes();
+
+	/**
+	 * @return The number of bytes in the free extents
+	 */
+	long getFreeBytes();
+
+	/**
+	 * @return The size of the largest free extent
+	 */
+	long getLargestFreeBlock();
+
+	/**
+	 * @return 1 - largest free block / free bytes, 0 when the free bytes are a single extent
+	 */
+	double getFragmentation();
+
+	/**
+	 * @return The number of successful allocations
+	 */
+	long getAllocCount();
+
+	/**
+	 * @return The number of allocations that found no fitting range
+	 */
+	long getFailedAllocCount();
+
+	/**
+	 * @return The number of frees
+	 */
+	long getFreeCount();
+
+	/**
+	 * @return The number of allocations by size class, entry <code>c</code> counting sizes of <code>2^c</code> to
+	 *         <code>2^(c+1) - 1</code> bytes
+	 */
+	long[] getAllocSizeHistogram();
+
+}
@@ -0,0 +1,354 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.util.Objects;
+
+import com.projectoctopus.memory.MemoryLayout.Field;
+import com.projectoctopus.memory.MemoryLayout.Type;
+
+/**
+ * A reusable view of one record of a layout at a time, reading and writing its fields in place<br>
+ * Moving the view with {@link #at(long)} or {@link #index(long)} doesn't allocate anything, and fields are reached
+ * through their precomputed offsets, so that walking an array of records only costs the memory accesses<br>
+ * Records must lie in allocated memory (see {@link MemoryLayout#allocate(Memory, long)}) : fields are written
+ * without flagging their bytes<br>
+ * A field is read with its type's methods only, one comparison guarding against a value spilling over the next
+ * field. It's written with its type's methods, or with a narrower integral value widened as a Java assignment would
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryStruct {
+
+	private final Memory		memory;
+	private final MemoryLayout	layout;
+	private final long			size;
+	private long				base;
+	private long				ptr;
+
+	MemoryStruct(Memory memory, MemoryLayout layout, long size, long base) {
+		this.memory = memory;
+		this.layout = layout;
+		this.size = size;
+		this.base = base;
+		this.ptr = base;
+	}
+
+	/**
+	 * Moves the view to the records starting at a pointer, on the first one
+	 * @param base A pointer to the first record
+	 * @return This view
+	 */
+	public MemoryStruct base(long base) {
+		this.base = base;
+		this.ptr = base;
+		return this;
+	}
+
+	/**
+	 * Moves the view to a record
+	 * @param ptr A pointer to the record
+	 * @return This view
+	 */
+	public MemoryStruct at(long ptr) {
+		this.ptr = ptr;
+		return this;
+	}
+
+	/**
+	 * Moves the view to a record of the array
+	 * @param i The record's index from the base
+	 * @return This view
+	 */
+	public MemoryStruct index(long i) {
+		this.ptr = base + i * size;
+		return this;
+	}
+
+	/**
+	 * Moves the view to the following record
+	 * @return This view
+	 */
+	public MemoryStruct next() {
+		ptr += size;
+		return this;
+	}
+
+	/**
+	 * @return The pointer to the viewed record
+	 */
+	public long ptr() {
+		return ptr;
+	}
+
+	/**
+	 * @return The viewed memory
+	 */
+	public Memory memory() {
+		return memory;
+	}
+
+	/**
+	 * @return The view's layout
+	 */
+	public MemoryLayout layout() {
+		return layout;
+	}
+
+	/**
+	 * Gives the pointer to a field
+	 * @param field The field
+	 * @param type The accessed type
+	 * @return The field's pointer
+	 * @throws IllegalArgumentException if the field isn't of that type
+	 */
+	private long offset_(Field field, Type type) {
+		if (field.type != type) throw new IllegalArgumentException("Field " + field.name + " is " + field.type + ", not " + type);
+		return ptr + field.offset;
+	}
+
+	/**
+	 * Gives the pointer to an element of a field
+	 * @param field The field
+	 * @param type The accessed type
+	 * @param i The element's index
+	 * @return The element's pointer
+	 * @throws IllegalArgumentException if the field isn't of that type
+	 * @throws IndexOutOfBoundsException if the field has no such element
+	 */
+	private long element_(Field field, Type type, int i) {
+		return offset_(field, type) + (long) Objects.checkIndex(i, field.length) * type.size();
+	}
+
+	public boolean read_bool(Field field) {
+		return memory.get_(offset_(field, Type.BOOL)) != 0;
+	}
+
+	public boolean read_bool(Field field, int i) {
+		return memory.get_(element_(field, Type.BOOL, i)) != 0;
+	}
+
+	public byte read_byte(Field field) {
+		return memory.get_(offset_(field, Type.BYTE));
+	}
+
+	public byte read_byte(Field field, int i) {
+		return memory.get_(element_(field, Type.BYTE, i));
+	}
+
+	public char read_char(Field field) {
+		return memory.get_char(offset_(field, Type.CHAR));
+	}
+
+	public char read_char(Field field, int i) {
+		return memory.get_char(element_(field, Type.CHAR, i));
+	}
+
+	public short read_short(Field field) {
+		return memory.get_short(offset_(field, Type.SHORT));
+	}
+
+	public short read_short(Field field, int i) {
+		return memory.get_short(element_(field, Type.SHORT, i));
+	}
+
+	public int read_int(Field field) {
+		return memory.get_int(offset_(field, Type.INT));
+	}
+
+	public int read_int(Field field, int i) {
+		return memory.get_int(element_(field, Type.INT, i));
+	}
+
+	public float read_float(Field field) {
+		return Float.intBitsToFloat(memory.get_int(offset_(field, Type.FLOAT)));
+	}
+
+	public float read_float(Field field, int i) {
+		return Float.intBitsToFloat(memory.get_int(element_(field, Type.FLOAT, i)));
+	}
+
+	public long read_long(Field field) {
+		return memory.get_long(offset_(field, Type.LONG));
+	}
+
+	public long read_long(Field field, int i) {
+		return memory.get_long(element_(field, Type.LONG, i));
+	}
+
+	public double read_double(Field field) {
+		return Double.longBitsToDouble(memory.get_long(offset_(field, Type.DOUBLE)));
+	}
+
+	public double read_double(Field field, int i) {
+		return Double.longBitsToDouble(memory.get_long(element_(field, Type.DOUBLE, i)));
+	}
+
+	public MemoryStruct write_(Field field, boolean value) {
+		long ptr = offset_(field, Type.BOOL);
+		memory.put_(ptr, (byte) ((value) ? 0x01 : 0x00));
+		return journal_(ptr, Byte.BYTES);
+	}
+
+	public MemoryStruct write_(Field field, int i, boolean value) {
+		long ptr = element_(field, Type.BOOL, i);
+		memory.put_(ptr, (byte) ((value) ? 0x01 : 0x00));
+		return journal_(ptr, Byte.BYTES);
+	}
+
+	public MemoryStruct write_(Field field, byte value) {
+		return widen_(field, Type.BYTE, -1, value);
+	}
+
+	public MemoryStruct write_(Field field, int i, byte value) {
+		return widen_(field, Type.BYTE, i, value);
+	}
+
+	public MemoryStruct write_(Field field, char value) {
+		return widen_(field, Type.CHAR, -1, value);
+	}
+
+	public MemoryStruct write_(Field field, int i, char value) {
+		return widen_(field, Type.CHAR, i, value);
+	}
+
+	public MemoryStruct write_(Field field, short value) {
+		return widen_(field, Type.SHORT, -1, value);
+	}
+
+	public MemoryStruct write_(Field field, int i, short value) {
+		return widen_(field, Type.SHORT, i, value);
+	}
+
+	public MemoryStruct write_(Field field, int value) {
+		return widen_(field, Type.INT, -1, value);
+	}
+
+	public MemoryStruct write_(Field field, int i, int value) {
+		return widen_(field, Type.INT, i, value);
+	}
+
+	public MemoryStruct write_(Field field, float value) {
+		long ptr = offset_(field, Type.FLOAT);
+		memory.put_int(ptr, Float.floatToRawIntBits(value));
+		return journal_(ptr, Float.BYTES);
+	}
+
+	public MemoryStruct write_(Field field, int i, float value) {
+		long ptr = element_(field, Type.FLOAT, i);
+		memory.put_int(ptr, Float.floatToRawIntBits(value));
+		return journal_(ptr, Float.BYTES);
+	}
+
+	public MemoryStruct write_(Field field, long value) {
+		return widen_(field, Type.LONG, -1, value);
+	}
+
+	public MemoryStruct write_(Field field, int i, long value) {
+		return widen_(field, Type.LONG, i, value);
+	}
+
+	public MemoryStruct write_(Field field, double value) {
+		long ptr = offset_(field, Type.DOUBLE);
+		memory.put_long(ptr, Double.doubleToRawLongBits(value));
+		return journal_(ptr, Double.BYTES);
+	}
+
+	public MemoryStruct write_(Field field, int i, double value) {
+		long ptr = element_(field, Type.DOUBLE, i);
+		memory.put_long(ptr, Double.doubleToRawLongBits(value));
+		return journal_(ptr, Double.BYTES);
+	}
+
+	/**
+	 * Writes an integral value to a field of its type, or of a type Java widens it to (so that
+	 * <code>write_(long_field, 42)</code> writes a long)
+	 * @param field The field
+	 * @param type The value's type
+	 * @param i The element's index, <b>-1</b> for the field itself
+	 * @param value The value, sign-extended (zero-extended from a char)
+	 * @return This view
+	 * @throws IllegalArgumentException if the field's type is narrower than the value's
+	 */
+	private MemoryStruct widen_(Field field, Type type, int i, long value) {
+		Type to = widens_(type, field.type) ? field.type : type; /* any other field fails the type check */
+		long ptr = (i < 0) ? offset_(field, to) : element_(field, to, i);
+		switch (to) {
+			case BYTE:
+				memory.put_(ptr, (byte) value);
+				break;
+			case CHAR:
+				memory.put_char(ptr, (char) value);
+				break;
+			case SHORT:
+				memory.put_short(ptr, (short) value);
+				break;
+			case INT:
+				memory.put_int(ptr, (int) value);
+				break;
+			case LONG:
+				memory.put_long(ptr, value);
+				break;
+			case FLOAT:
+				memory.put_int(ptr, Float.floatToRawIntBits(value));
+				break;
+			case DOUBLE:
+				memory.put_long(ptr, Double.doubleToRawLongBits(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Field " + field.name + " is " + field.type + ", not " + type);
+		}
+		return journal_(ptr, to.size());
+	}
+
+	/**
+	 * Tells whether Java widens a type to another, as an assignment would
+	 * @param from The value's type
+	 * @param to The field's type
+	 * @return <b>true</b> if to is strictly wider than from
+	 */
+	private static boolean widens_(Type from, Type to) {
+		switch (from) {
+			case BYTE:
+				return to == Type.SHORT || widens_(Type.SHORT, to);
+			case SHORT:
+			case CHAR:
+				return to == Type.INT || widens_(Type.INT, to);
+			case INT:
+				return to == Type.LONG || widens_(Type.LONG, to);
+			case LONG:
+				return to == Type.FLOAT || to == Type.DOUBLE;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Records a field written in place in the memory's journal, if it has one
+	 * @param ptr The field's pointer
+	 * @param size The field's size in bytes
+	 * @return This struct
+	 */
+	private MemoryStruct journal_(long ptr, int size) {
+		Memory.journal_(memory, ptr, size);
+		return this;
+	}
+
+}
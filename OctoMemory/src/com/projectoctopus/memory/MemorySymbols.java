@@ -0,0 +1,277 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * A symbol table living inside a memory, storing each distinct string once and naming it by an <code>int</code>
+ * handle<br>
+ * Two symbols are equal if and only if their handles are, and handles are given in insertion order from 0<br>
+ * <b>Layout :</b> everything is allocated in the memory itself, so that a mapped memory reopens its table with
+ * {@link #MemorySymbols(Memory, long)}
+ * <ul>
+ * <li>a header of {@value #HEADER_SIZE} bytes : the index's pointer and slots, the symbols' count, the handles'
+ * pointer and capacity</li>
+ * <li>an open-addressed index of <code>long</code> slots, linearly probed, each holding a string's hash (high int) and
+ * its handle + 1 (low int), 0 for an empty slot</li>
+ * <li>the handles, a <code>long</code> pointer per symbol</li>
+ * <li>the symbols, each one encoded by {@link MemoryUTF8}</li>
+ * </ul>
+ * Looking a string up compares it to the stored bytes in place, so neither {@link #lookup(String)} nor
+ * {@link #intern(String)} of a known string allocates any object<br>
+ * The table isn't thread-safe, and {@link #relocate(MemoryRelocation)} must be called after compacting its memory
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemorySymbols {
+
+	public static final int		HEADER_SIZE		= 5 * Long.BYTES;
+	private static final int	INITIAL_SLOTS	= 16;
+
+	private final Memory	memory;
+	private long			header;
+	private long			index;		/* the index's pointer */
+	private long			slots;		/* the index's number of slots, a power of two */
+	private int				count;
+	private long			handles;	/* the handles' pointer */
+	private long			capacity;	/* the handles' capacity */
+
+	/**
+	 * Creates an empty table in a memory
+	 * @param memory The memory to allocate the table into
+	 * @throws MemoryException if the memory can't fit the table
+	 */
+	public MemorySymbols(Memory memory) throws MemoryException {
+		this.memory = memory;
+		header = m_alloc(memory, (long) HEADER_SIZE);
+		slots = INITIAL_SLOTS;
+		index = m_alloc(memory, slots * Long.BYTES);
+		capacity = INITIAL_SLOTS >> 1;
+		handles = m_alloc(memory, capacity * Long.BYTES);
+		store();
+	}
+
+	/**
+	 * Reopens a table already in a memory
+	 * @param memory The memory holding the table
+	 * @param header The pointer to the table's header
+	 */
+	public MemorySymbols(Memory memory, long header) {
+		this.memory = memory;
+		this.header = header;
+		index = memory.get_long(header);
+		slots = memory.get_long(header + 8);
+		count = Math.toIntExact(memory.get_long(header + 16));
+		handles = memory.get_long(header + 24);
+		capacity = memory.get_long(header + 32);
+	}
+
+	/**
+	 * Writes the table's state to its header
+	 */
+	private void store() {
+		memory.put_long(header, index);
+		memory.put_long(header + 8, slots);
+		memory.put_long(header + 16, count);
+		memory.put_long(header + 24, handles);
+		memory.put_long(header + 32, capacity);
+		Memory.journal_(memory, header, HEADER_SIZE);
+	}
+
+	/**
+	 * Spreads a string's hash code over its bits, as the index only uses the lowest ones
+	 * @param str A String
+	 * @return Its spread hash
+	 */
+	private static int hash_(String str) {
+		int h = str.hashCode() * 0x9e3779b9; /* the string caches its hash code */
+		return h ^ h >>> 16;
+	}
+
+	/**
+	 * Finds a string's slot
+	 * @param str A String
+	 * @param hash Its spread hash
+	 * @return The string's slot if it's a symbol, else the empty slot it would be inserted into
+	 */
+	private long slot_(String str, int hash) {
+		long mask = slots - 1;
+		for (long slot = hash & mask;; slot = slot + 1 & mask) {
+			long entry = memory.get_long(index + slot * Long.BYTES);
+			if (entry == 0) return slot;
+			if ((int) (entry >>> 32) == hash && MemoryUTF8.equals_(memory, pointer((int) entry - 1), str)) return slot;
+		}
+	}
+
+	/**
+	 * Gives the handle of a symbol
+	 * @param str A String
+	 * @return The string's handle<br>
+	 *         <b>-1</b> if it isn't a symbol
+	 */
+	public int lookup(String str) {
+		long entry = memory.get_long(index + slot_(str, hash_(str)) * Long.BYTES);
+		return (int) entry - 1; /* an empty slot gives -1 */
+	}
+
+	/**
+	 * Gives the handle of a symbol, storing it first if it's a new one
+	 * @param str A String
+	 * @return The string's handle
+	 * @throws MemoryException if the memory can't fit the new symbol
+	 */
+	public int intern(String str) throws MemoryException {
+		int hash = hash_(str);
+		long slot = slot_(str, hash);
+		long entry = memory.get_long(index + slot * Long.BYTES);
+		if (entry != 0) return (int) entry - 1;
+		if (count == Integer.MAX_VALUE - 1) throw new MemoryException("Symbol table full");
+		long grown = (count == capacity) ? m_alloc(memory, capacity * 2 * Long.BYTES) : -1;
+		long table = -1, ptr;
+		try { /* every allocation before any change, so that a full memory leaves the table as it was */
+			if ((long) (count + 1) << 1 > slots) table = m_alloc(memory, slots * 2 * Long.BYTES); /* keeps the index at most half full */
+			ptr = m_alloc(memory, MemoryUTF8.sizeof_(str));
+		} catch (MemoryException e) {
+			if (table != -1) m_free(memory, table, slots * 2 * Long.BYTES);
+			if (grown != -1) m_free(memory, grown, capacity * 2 * Long.BYTES);
+			throw e;
+		}
+		if (grown != -1) grow_handles(grown);
+		MemoryUTF8.encode(memory, ptr, str);
+		int handle = count++;
+		memory.put_long(handles + (long) handle * Long.BYTES, ptr);
+		Memory.journal_(memory, handles + (long) handle * Long.BYTES, Long.BYTES);
+		if (table != -1) rehash(table, hash, handle);
+		else {
+			memory.put_long(index + slot * Long.BYTES, (long) hash << 32 | handle + 1);
+			Memory.journal_(memory, index + slot * Long.BYTES, Long.BYTES);
+		}
+		store();
+		return handle;
+	}
+
+	/**
+	 * Doubles the handles' capacity, moving them over
+	 * @param ptr The new handles' pointer, of twice the capacity
+	 */
+	private void grow_handles(long ptr) {
+		long size = capacity * Long.BYTES;
+		memory.copy_(handles, ptr, size);
+		Memory.journal_(memory, ptr, size);
+		m_free(memory, handles, size);
+		handles = ptr;
+		capacity <<= 1;
+	}
+
+	/**
+	 * Doubles the index's slots, moving the entries over and adding a new one
+	 * @param ptr The new index's pointer, of twice the slots and zeroed
+	 * @param hash The new entry's hash
+	 * @param handle The new entry's handle
+	 */
+	private void rehash(long ptr, int hash, int handle) {
+		long size = slots << 1;
+		long mask = size - 1;
+		for (long i = 0; i < slots; i++) {
+			long entry = memory.get_long(index + i * Long.BYTES);
+			if (entry != 0) put_(ptr, mask, entry);
+		}
+		put_(ptr, mask, (long) hash << 32 | handle + 1);
+		Memory.journal_(memory, ptr, size * Long.BYTES); /* the whole new index at once */
+		m_free(memory, index, slots * Long.BYTES);
+		index = ptr;
+		slots = size;
+	}
+
+	/**
+	 * Puts an entry in the first empty slot from its hash
+	 * @param index The index's pointer
+	 * @param mask The index's slots minus one
+	 * @param entry The entry
+	 */
+	private void put_(long index, long mask, long entry) {
+		long slot = (entry >>> 32) & mask;
+		while (memory.get_long(index + slot * Long.BYTES) != 0)
+			slot = slot + 1 & mask;
+		memory.put_long(index + slot * Long.BYTES, entry);
+	}
+
+	/**
+	 * Gives a symbol's pointer, to be read by {@link MemoryReader#read_string(Memory, long)}
+	 * @param handle The symbol's handle
+	 * @return The pointer to the symbol's length prefix
+	 * @throws IndexOutOfBoundsException if there's no such handle
+	 */
+	public long pointer(int handle) {
+		if (handle < 0 || handle >= count) throw new IndexOutOfBoundsException("No symbol " + handle);
+		return memory.get_long(handles + (long) handle * Long.BYTES);
+	}
+
+	/**
+	 * Gives a symbol's string
+	 * @param handle The symbol's handle
+	 * @return The symbol, decoded
+	 */
+	public String symbol(int handle) {
+		return MemoryUTF8.decode(memory, pointer(handle));
+	}
+
+	/**
+	 * Fixes the table's pointers up after its memory was compacted
+	 * @param moved The runs the compaction moved
+	 */
+	public void relocate(MemoryRelocation moved) {
+		header = moved.relocate(header);
+		index = moved.relocate(index);
+		handles = moved.relocate(handles);
+		for (int i = 0; i < count; i++) {
+			long ptr = handles + (long) i * Long.BYTES;
+			memory.put_long(ptr, moved.relocate(memory.get_long(ptr)));
+		}
+		Memory.journal_(memory, handles, (long) count * Long.BYTES);
+		store();
+	}
+
+	/**
+	 * @return The table's memory
+	 */
+	public Memory memory() {
+		return memory;
+	}
+
+	/**
+	 * @return The pointer to the table's header, to reopen it with
+	 */
+	public long header() {
+		return header;
+	}
+
+	/**
+	 * @return The number of symbols
+	 */
+	public int count() {
+		return count;
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * Thread-local allocation buffers carved out of a shared memory<br>
+ * Each thread takes a chunk of the memory with {@link Memory#m_alloc}, then serves its small allocations from it with
+ * a bump pointer : no lock, no shared allocation flag written, as the whole chunk was flagged (and zeroed) at once.
+ * Larger allocations go straight to the memory<br>
+ * Ranges handed out are regular allocated ranges, and can be given back one by one with {@link Memory#m_free}<br>
+ * <b>Sharing :</b> chunks are taken and given back with {@link Memory#m_alloc} and {@link Memory#m_free}, under the
+ * memory's own allocator locking (a stripe's lock of a {@link ConcurrentMemory}, the allocator's monitor otherwise), so
+ * that threads allocating without the TLAB need no other lock. Only a {@link ConcurrentMemory} updates the allocation
+ * flags of bytes written by several threads atomically<br>
+ * A thread gives its chunk's unused bytes back with {@link #release()}, which it must do before it ends
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class MemoryTLAB {
+
+	/**
+	 * A thread's current chunk
+	 */
+	private static final class Buffer {
+		long top, limit;
+	}
+
+	private final Memory				memory;
+	private final long					chunk;
+	private final long					small;
+	private final ThreadLocal<Buffer>	buffers	= ThreadLocal.withInitial(Buffer::new);
+
+	/**
+	 * Creates thread-local buffers over a memory, serving allocations up to an eighth of a chunk
+	 * @param memory The shared memory
+	 * @param chunk The size of a thread's chunk in bytes
+	 */
+	public MemoryTLAB(Memory memory, long chunk) {
+		this(memory, chunk, chunk >>> 3);
+	}
+
+	/**
+	 * Creates thread-local buffers over a memory
+	 * @param memory The shared memory
+	 * @param chunk The size of a thread's chunk in bytes
+	 * @param small The size of the largest allocation served from a chunk (at most the chunk's size)
+	 * @throws IllegalArgumentException if the sizes aren't positive, small exceeds chunk, or chunk exceeds a
+	 *             {@link ConcurrentMemory}'s stripe (no single allocation can be larger)
+	 */
+	public MemoryTLAB(Memory memory, long chunk, long small) {
+		if (chunk <= 0 || small <= 0 || small > chunk) throw new IllegalArgumentException("Need 0 < small <= chunk");
+		if (memory instanceof ConcurrentMemory && chunk > ((ConcurrentMemory) memory).stripe_size()) throw new IllegalArgumentException("Chunk of " + chunk + " bytes exceeds the memory's stripes of " + ((ConcurrentMemory) memory).stripe_size() + " bytes");
+		this.memory = memory;
+		this.chunk = chunk;
+		this.small = small;
+	}
+
+	/**
+	 * Allocates size bytes (zeroed), from the current thread's chunk if small enough
+	 * @param size The size (in bytes) to allocate
+	 * @return A pointer to the first allocated byte
+	 * @throws MemoryException if the memory can't fit the range or a new chunk
+	 * @throws IllegalArgumentException if size isn't positive
+	 */
+	public long allocate(long size) throws MemoryException {
+		if (size <= 0) throw new IllegalArgumentException("Allocation size must be positive");
+		if (size > small) return alloc_(size);
+		Buffer buffer = buffers.get();
+		if (buffer.limit - buffer.top < size) refill(buffer);
+		long ptr = buffer.top;
+		buffer.top += size;
+		return ptr;
+	}
+
+	/**
+	 * Retires the thread's chunk and takes a new one
+	 * @param buffer The thread's buffer
+	 * @throws MemoryException if the memory can't fit a new chunk
+	 */
+	private void refill(Buffer buffer) throws MemoryException {
+		long ptr = alloc_(chunk);
+		free_(buffer.top, buffer.limit - buffer.top); /* the old chunk's tail */
+		buffer.top = ptr;
+		buffer.limit = ptr + chunk;
+	}
+
+	/**
+	 * Gives the current thread's unused bytes back to the memory
+	 */
+	public void release() {
+		Buffer buffer = buffers.get();
+		free_(buffer.top, buffer.limit - buffer.top);
+		buffer.top = buffer.limit = 0;
+		buffers.remove();
+	}
+
+	/**
+	 * @return The number of bytes left in the current thread's chunk
+	 */
+	public long remaining() {
+		Buffer buffer = buffers.get();
+		return buffer.limit - buffer.top;
+	}
+
+	/**
+	 * @return The shared memory
+	 */
+	public Memory memory() {
+		return memory;
+	}
+
+	private long alloc_(long size) throws MemoryException {
+		return m_alloc(memory, size);
+	}
+
+	private void free_(long ptr, long size) {
+		if (size > 0) m_free(memory, ptr, size);
+	}
+
+}
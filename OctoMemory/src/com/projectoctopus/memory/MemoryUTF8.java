@@ -0,0 +1,354 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import static com.projectoctopus.memory.Memory.m_flag;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The string codec of the memory toolkits<br>
+ * A string is stored as its UTF-8 byte length, written as a varint (7 bits a byte, lowest first, the high bit telling
+ * another byte follows), then its UTF-8 bytes<br>
+ * Strings are encoded straight into the memory, without an intermediate array, and decoded in a single pass<br>
+ * Unpaired surrogates are encoded as <b>'?'</b>, just like {@link String#getBytes(java.nio.charset.Charset)} does
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public final class MemoryUTF8 {
+
+	private MemoryUTF8() {}
+
+	/*
+	 * Sizes
+	 */
+
+	/**
+	 * Gives the number of bytes a string takes once UTF-8 encoded
+	 * @param str A String
+	 * @return The size of its UTF-8 bytes, prefix excluded
+	 */
+	public static long length(String str) {
+		int count = str.length();
+		long size = count;
+		for (int i = 0; i < count; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) continue;
+			if (c < 0x800) size += 1;
+			else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(str.charAt(i + 1))) {
+				size += 2; /* both surrogates make 4 bytes */
+				i++;
+			} else if (Character.isSurrogate(c)) continue; /* encoded as '?' */
+			else size += 2;
+		}
+		return size;
+	}
+
+	/**
+	 * Gives the size of a varint
+	 * @param value A positive value
+	 * @return The number of bytes it is written with
+	 */
+	public static int sizeof_varint(long value) {
+		return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+	}
+
+	/**
+	 * Gives the size of a given string in memory
+	 * @param str A String
+	 * @return The size of its length prefix and UTF-8 bytes
+	 */
+	public static long sizeof_(String str) {
+		long length = length(str);
+		return sizeof_varint(length) + length;
+	}
+
+	/*
+	 * Memory codec
+	 */
+
+	/**
+	 * Writes a varint in a memory, without flagging it
+	 * @param memory The memory to write to
+	 * @param ptr The pointer to write at
+	 * @param value A positive value
+	 * @return A pointer to the byte following the varint
+	 */
+	static long put_varint(Memory memory, long ptr, long value) {
+		while ((value & ~0x7fL) != 0) {
+			memory.put_(ptr++, (byte) (value | 0x80));
+			value >>>= 7;
+		}
+		memory.put_(ptr++, (byte) value);
+		return ptr;
+	}
+
+	/**
+	 * Reads a varint from a memory
+	 * @param memory The memory to read from
+	 * @param ptr The pointer to the varint's first byte
+	 * @return The value
+	 */
+	public static long read_varint(Memory memory, long ptr) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = memory.get_(ptr++);
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) return value;
+		}
+	}
+
+	/**
+	 * Writes a varint in a memory
+	 * @param memory The memory to write to
+	 * @param ptr The pointer to write at
+	 * @param value A positive value
+	 * @return A pointer to the byte following the varint
+	 */
+	public static long write_varint(Memory memory, long ptr, long value) {
+		long end = put_varint(memory, ptr, value);
+		m_flag(memory, ptr, end - ptr, true);
+		return end;
+	}
+
+	/**
+	 * Writes a string in a memory, its length prefix first
+	 * @param memory The memory to write to
+	 * @param ptr The pointer to write at
+	 * @param str A String
+	 * @return A pointer to the byte following the string
+	 */
+	public static long encode(Memory memory, long ptr, String str) {
+		long start = ptr;
+		ptr = put_varint(memory, ptr, length(str));
+		if (memory.data != null) ptr = encode_(memory.data, Math.toIntExact(ptr), str); /* the heap is written in place */
+		else {
+			int count = str.length();
+			for (int i = 0; i < count; i++) {
+				char c = str.charAt(i);
+				if (c < 0x80) memory.put_(ptr++, (byte) c);
+				else if (c < 0x800) {
+					memory.put_(ptr++, (byte) (0xc0 | c >> 6));
+					memory.put_(ptr++, (byte) (0x80 | c & 0x3f));
+				} else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(str.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, str.charAt(++i));
+					memory.put_(ptr++, (byte) (0xf0 | cp >> 18));
+					memory.put_(ptr++, (byte) (0x80 | cp >> 12 & 0x3f));
+					memory.put_(ptr++, (byte) (0x80 | cp >> 6 & 0x3f));
+					memory.put_(ptr++, (byte) (0x80 | cp & 0x3f));
+				} else if (Character.isSurrogate(c)) memory.put_(ptr++, (byte) '?');
+				else {
+					memory.put_(ptr++, (byte) (0xe0 | c >> 12));
+					memory.put_(ptr++, (byte) (0x80 | c >> 6 & 0x3f));
+					memory.put_(ptr++, (byte) (0x80 | c & 0x3f));
+				}
+			}
+		}
+		m_flag(memory, start, ptr - start, true);
+		return ptr;
+	}
+
+	/**
+	 * Reads a string from a memory
+	 * @param memory The memory to read from
+	 * @param ptr The pointer to the string's length prefix
+	 * @return The string
+	 */
+	public static String decode(Memory memory, long ptr) {
+		long length = read_varint(memory, ptr);
+		ptr += sizeof_varint(length);
+		if (memory.data != null) /* the heap is decoded by the JDK, straight from the array */
+			return new String(memory.data, Math.toIntExact(ptr), Math.toIntExact(length), StandardCharsets.UTF_8);
+		char[] chars = new char[Math.toIntExact(length)]; /* never more chars than bytes */
+		int count = 0;
+		long end = ptr + length;
+		while (ptr < end) {
+			int b = memory.get_(ptr++);
+			if (b >= 0) chars[count++] = (char) b;
+			else if ((b & 0xe0) == 0xc0 && ptr < end) chars[count++] = (char) ((b & 0x1f) << 6 | memory.get_(ptr++) & 0x3f);
+			else if ((b & 0xf0) == 0xe0 && ptr + 1 < end) {
+				chars[count++] = (char) ((b & 0x0f) << 12 | (memory.get_(ptr) & 0x3f) << 6 | memory.get_(ptr + 1) & 0x3f);
+				ptr += 2;
+			} else if ((b & 0xf8) == 0xf0 && ptr + 2 < end) {
+				int cp = (b & 0x07) << 18 | (memory.get_(ptr) & 0x3f) << 12 | (memory.get_(ptr + 1) & 0x3f) << 6
+						| memory.get_(ptr + 2) & 0x3f;
+				chars[count++] = Character.highSurrogate(cp);
+				chars[count++] = Character.lowSurrogate(cp);
+				ptr += 3;
+			} else chars[count++] = '\ufffd'; /* malformed */
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * Compares a string in a memory to a given one, byte for byte, without decoding it
+	 * @param memory The memory to read from
+	 * @param ptr The pointer to the string's length prefix
+	 * @param str A String
+	 * @return Whether both strings are equal once UTF-8 encoded
+	 */
+	public static boolean equals_(Memory memory, long ptr, String str) {
+		long length = read_varint(memory, ptr);
+		if (length < str.length() || length > 3L * str.length()) return false; /* can't encode to that many bytes */
+		ptr += sizeof_varint(length);
+		long end = ptr + length;
+		int count = str.length();
+		for (int i = 0; i < count; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) {
+				if (ptr >= end || memory.get_(ptr++) != (byte) c) return false;
+				continue;
+			}
+			int cp = c, bytes;
+			if (c < 0x800) bytes = 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(str.charAt(i + 1))) {
+				cp = Character.toCodePoint(c, str.charAt(++i));
+				bytes = 4;
+			} else if (Character.isSurrogate(c)) {
+				cp = '?';
+				bytes = 1;
+			} else bytes = 3;
+			if (end - ptr < bytes) return false;
+			if (bytes == 1) {
+				if (memory.get_(ptr++) != (byte) cp) return false;
+				continue;
+			}
+			int shift = 6 * (bytes - 1);
+			if (memory.get_(ptr++) != (byte) (0xff00 >> bytes | cp >> shift)) return false; /* the lead byte */
+			while ((shift -= 6) >= 0)
+				if (memory.get_(ptr++) != (byte) (0x80 | cp >> shift & 0x3f)) return false;
+		}
+		return ptr == end;
+	}
+
+	/**
+	 * Skips a string in a memory
+	 * @param memory The memory to read from
+	 * @param ptr The pointer to the string's length prefix
+	 * @return A pointer to the byte following the string
+	 */
+	public static long skip(Memory memory, long ptr) {
+		long length = read_varint(memory, ptr);
+		return ptr + sizeof_varint(length) + length;
+	}
+
+	/*
+	 * Array codec
+	 */
+
+	/**
+	 * Encodes a string's UTF-8 bytes in an array, without any prefix
+	 * @param data The array to write to
+	 * @param ptr The index to write at
+	 * @param str A String
+	 * @return The index following the bytes
+	 */
+	private static int encode_(byte[] data, int ptr, String str) {
+		int count = str.length();
+		int i = 0;
+		for (char c; i < count && (c = str.charAt(i)) < 0x80; i++)
+			data[ptr++] = (byte) c; /* ascii runs go first */
+		for (; i < count; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) data[ptr++] = (byte) c;
+			else if (c < 0x800) {
+				data[ptr++] = (byte) (0xc0 | c >> 6);
+				data[ptr++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(str.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, str.charAt(++i));
+				data[ptr++] = (byte) (0xf0 | cp >> 18);
+				data[ptr++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				data[ptr++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				data[ptr++] = (byte) (0x80 | cp & 0x3f);
+			} else if (Character.isSurrogate(c)) data[ptr++] = (byte) '?';
+			else {
+				data[ptr++] = (byte) (0xe0 | c >> 12);
+				data[ptr++] = (byte) (0x80 | c >> 6 & 0x3f);
+				data[ptr++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		return ptr;
+	}
+
+	/**
+	 * Reads a varint from an array
+	 * @param source The array to read from
+	 * @param ptr The index of the varint's first byte
+	 * @return The value
+	 */
+	public static long read_varint(byte[] source, int ptr) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = source[ptr++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) return value;
+		}
+	}
+
+	/**
+	 * Writes a varint in an array
+	 * @param dest The array to write to
+	 * @param ptr The index to write at
+	 * @param value A positive value
+	 * @return The index following the varint
+	 */
+	public static int write_varint(byte[] dest, int ptr, long value) {
+		while ((value & ~0x7fL) != 0) {
+			dest[ptr++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		dest[ptr++] = (byte) value;
+		return ptr;
+	}
+
+	/**
+	 * Writes a string in an array, its length prefix first
+	 * @param dest The array to write to
+	 * @param ptr The index to write at
+	 * @param str A String
+	 * @return The index following the string
+	 */
+	public static int encode(byte[] dest, int ptr, String str) {
+		return encode_(dest, write_varint(dest, ptr, length(str)), str);
+	}
+
+	/**
+	 * Reads a string from an array
+	 * @param source The array to read from
+	 * @param ptr The index of the string's length prefix
+	 * @return The string
+	 */
+	public static String decode(byte[] source, int ptr) {
+		long length = read_varint(source, ptr);
+		return new String(source, ptr + sizeof_varint(length), Math.toIntExact(length), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Skips a string in an array
+	 * @param source The array to read from
+	 * @param ptr The index of the string's length prefix
+	 * @return The index following the string
+	 */
+	public static int skip(byte[] source, int ptr) {
+		long length = read_varint(source, ptr);
+		return Math.toIntExact(ptr + sizeof_varint(length) + length);
+	}
+
+}
@@ -19,230 +19,459 @@
  */
 package com.projectoctopus.memory;
 
+import static com.projectoctopus.memory.Memory.m_flag;
+
 /**
- * A toolkit for writing a memory's data
+ * A toolkit for writing a memory's data<br>
+ * Primitives are stored in the memory's byte order (big-endian by default, see {@link Memory#m_order}), each one in a
+ * single access, and a value's allocation flags are set once for its whole range<br>
+ * Arrays are written at their elements' stride, in bulk, either whole or a slice of them<br>
+ * Strings are written UTF-8, straight into the memory, after their byte length as a varint, see {@link MemoryUTF8}<br>
+ * Every memory backend can be written with pointers up to 2GB, the <code>long</code> pointer overloads reach past it
  * @author Theophile Dano, Spriithy 2015
  * @since 0.1
  */
 public class MemoryWriter {
 
-	private Memory	memory;
+	private volatile Memory	memory;
 	private boolean	linked	= false;
 
-	public void link(Memory memory) {
-		assert(!linked);
+	/**
+	 * Links this toolkit to a memory, once and for all
+	 * @param memory The memory to operate with
+	 * @throws IllegalStateException if already linked
+	 */
+	public synchronized void link(Memory memory) {
+		if (linked) throw new IllegalStateException("Already linked to a memory");
 		linked = true;
 		this.memory = memory;
 	}
 
 	public static int write_(Memory memory, int ptr, boolean value) {
-		ptr = write_(memory, ptr, (byte) ((value) ? 0x01 : 0x00));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, boolean[] booleans) {
-		for (boolean value : booleans)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, booleans, 0, booleans.length);
+	}
+
+	public static int write_(Memory memory, int ptr, boolean[] booleans, int off, int len) {
+		return (int) write_(memory, (long) ptr, booleans, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, byte value) {
-		memory.alloc_f[ptr] = true;
-		memory.data[ptr++] = value;
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, byte[] bytes) {
-		for (byte value : bytes)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, bytes, 0, bytes.length);
+	}
+
+	public static int write_(Memory memory, int ptr, byte[] bytes, int off, int len) {
+		return (int) write_(memory, (long) ptr, bytes, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, char value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, char[] chars) {
-		for (char value : chars)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, chars, 0, chars.length);
+	}
+
+	public static int write_(Memory memory, int ptr, char[] chars, int off, int len) {
+		return (int) write_(memory, (long) ptr, chars, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, double value) {
-		ptr = write_(memory, ptr, Double.doubleToLongBits(value));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, double[] doubles) {
-		for (double value : doubles)
-			ptr = write_(memory, ptr, Double.doubleToLongBits(value));
-		return ptr;
+		return (int) write_(memory, (long) ptr, doubles, 0, doubles.length);
+	}
+
+	public static int write_(Memory memory, int ptr, double[] doubles, int off, int len) {
+		return (int) write_(memory, (long) ptr, doubles, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, float value) {
-		ptr = write_(memory, ptr, Float.floatToIntBits(value));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, float[] floats) {
-		for (float value : floats)
-			ptr = write_(memory, ptr, Float.floatToIntBits(value));
-		return ptr;
+		return (int) write_(memory, (long) ptr, floats, 0, floats.length);
+	}
+
+	public static int write_(Memory memory, int ptr, float[] floats, int off, int len) {
+		return (int) write_(memory, (long) ptr, floats, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, int value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 24) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 16) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, int[] ints) {
-		for (int value : ints)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, ints, 0, ints.length);
+	}
+
+	public static int write_(Memory memory, int ptr, int[] ints, int off, int len) {
+		return (int) write_(memory, (long) ptr, ints, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, long value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 56) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 48) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 40) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 32) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 24) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 16) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, long[] longs) {
-		for (long value : longs)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, longs, 0, longs.length);
+	}
+
+	public static int write_(Memory memory, int ptr, long[] longs, int off, int len) {
+		return (int) write_(memory, (long) ptr, longs, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, short value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return (int) write_(memory, (long) ptr, value);
 	}
 
 	public static int write_(Memory memory, int ptr, short[] shorts) {
-		for (short value : shorts)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, shorts, 0, shorts.length);
+	}
+
+	public static int write_(Memory memory, int ptr, short[] shorts, int off, int len) {
+		return (int) write_(memory, (long) ptr, shorts, off, len);
 	}
 
 	public static int write_(Memory memory, int ptr, String str) {
-		ptr = write_(memory, ptr, (short) str.length());
-		for (byte value : str.getBytes())
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return (int) write_(memory, (long) ptr, str);
+	}
+
+	public static long write_(Memory memory, long ptr, boolean value) {
+		return write_(memory, ptr, (byte) ((value) ? 0x01 : 0x00));
+	}
+
+	public static long write_(Memory memory, long ptr, boolean[] booleans) {
+		return write_(memory, ptr, booleans, 0, booleans.length);
+	}
+
+	public static long write_(Memory memory, long ptr, boolean[] booleans, int off, int len) {
+		for (int i = 0; i < len; i++)
+			memory.put_(ptr + i, (byte) ((booleans[off + i]) ? 0x01 : 0x00));
+		m_flag(memory, ptr, (long) len * Byte.BYTES, true);
+		return ptr + (long) len * Byte.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, byte value) {
+		memory.put_(ptr, value);
+		m_flag(memory, ptr, 1, true);
+		return ptr + 1;
+	}
+
+	public static long write_(Memory memory, long ptr, byte[] bytes) {
+		return write_(memory, ptr, bytes, 0, bytes.length);
+	}
+
+	public static long write_(Memory memory, long ptr, byte[] bytes, int off, int len) {
+		memory.put_(ptr, bytes, off, len);
+		m_flag(memory, ptr, (long) len * Byte.BYTES, true);
+		return ptr + (long) len * Byte.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, char value) {
+		memory.put_char(ptr, value);
+		m_flag(memory, ptr, Character.BYTES, true);
+		return ptr + Character.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, char[] chars) {
+		return write_(memory, ptr, chars, 0, chars.length);
+	}
 
+	public static long write_(Memory memory, long ptr, char[] chars, int off, int len) {
+		memory.put_(ptr, chars, off, len);
+		m_flag(memory, ptr, (long) len * Character.BYTES, true);
+		return ptr + (long) len * Character.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, double value) {
+		return write_(memory, ptr, Double.doubleToLongBits(value));
+	}
+
+	public static long write_(Memory memory, long ptr, double[] doubles) {
+		return write_(memory, ptr, doubles, 0, doubles.length);
+	}
+
+	public static long write_(Memory memory, long ptr, double[] doubles, int off, int len) {
+		memory.put_(ptr, doubles, off, len);
+		m_flag(memory, ptr, (long) len * Double.BYTES, true);
+		return ptr + (long) len * Double.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, float value) {
+		return write_(memory, ptr, Float.floatToIntBits(value));
+	}
+
+	public static long write_(Memory memory, long ptr, float[] floats) {
+		return write_(memory, ptr, floats, 0, floats.length);
+	}
+
+	public static long write_(Memory memory, long ptr, float[] floats, int off, int len) {
+		memory.put_(ptr, floats, off, len);
+		m_flag(memory, ptr, (long) len * Float.BYTES, true);
+		return ptr + (long) len * Float.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, int value) {
+		memory.put_int(ptr, value);
+		m_flag(memory, ptr, Integer.BYTES, true);
+		return ptr + Integer.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, int[] ints) {
+		return write_(memory, ptr, ints, 0, ints.length);
+	}
+
+	public static long write_(Memory memory, long ptr, int[] ints, int off, int len) {
+		memory.put_(ptr, ints, off, len);
+		m_flag(memory, ptr, (long) len * Integer.BYTES, true);
+		return ptr + (long) len * Integer.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, long value) {
+		memory.put_long(ptr, value);
+		m_flag(memory, ptr, Long.BYTES, true);
+		return ptr + Long.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, long[] longs) {
+		return write_(memory, ptr, longs, 0, longs.length);
+	}
+
+	public static long write_(Memory memory, long ptr, long[] longs, int off, int len) {
+		memory.put_(ptr, longs, off, len);
+		m_flag(memory, ptr, (long) len * Long.BYTES, true);
+		return ptr + (long) len * Long.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, short value) {
+		memory.put_short(ptr, value);
+		m_flag(memory, ptr, Short.BYTES, true);
+		return ptr + Short.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, short[] shorts) {
+		return write_(memory, ptr, shorts, 0, shorts.length);
+	}
+
+	public static long write_(Memory memory, long ptr, short[] shorts, int off, int len) {
+		memory.put_(ptr, shorts, off, len);
+		m_flag(memory, ptr, (long) len * Short.BYTES, true);
+		return ptr + (long) len * Short.BYTES;
+	}
+
+	public static long write_(Memory memory, long ptr, String str) {
+		return MemoryUTF8.encode(memory, ptr, str);
 	}
 
 	public int write_(int ptr, boolean value) {
-		ptr = write_(memory, ptr, (byte) ((value) ? 0x01 : 0x00));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, boolean[] booleans) {
-		for (boolean value : booleans)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, booleans);
+	}
+
+	public int write_(int ptr, boolean[] booleans, int off, int len) {
+		return write_(memory, ptr, booleans, off, len);
 	}
 
 	public int write_(int ptr, byte value) {
-		memory.alloc_f[ptr] = true;
-		memory.data[ptr++] = value;
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, byte[] bytes) {
-		for (byte value : bytes)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, bytes);
+	}
+
+	public int write_(int ptr, byte[] bytes, int off, int len) {
+		return write_(memory, ptr, bytes, off, len);
 	}
 
 	public int write_(int ptr, char value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, char[] chars) {
-		for (char value : chars)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, chars);
+	}
+
+	public int write_(int ptr, char[] chars, int off, int len) {
+		return write_(memory, ptr, chars, off, len);
 	}
 
 	public int write_(int ptr, double value) {
-		ptr = write_(memory, ptr, Double.doubleToLongBits(value));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, double[] doubles) {
-		for (double value : doubles)
-			ptr = write_(memory, ptr, Double.doubleToLongBits(value));
-		return ptr;
+		return write_(memory, ptr, doubles);
+	}
+
+	public int write_(int ptr, double[] doubles, int off, int len) {
+		return write_(memory, ptr, doubles, off, len);
 	}
 
 	public int write_(int ptr, float value) {
-		ptr = write_(memory, ptr, Float.floatToIntBits(value));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, float[] floats) {
-		for (float value : floats)
-			ptr = write_(memory, ptr, Float.floatToIntBits(value));
-		return ptr;
+		return write_(memory, ptr, floats);
+	}
+
+	public int write_(int ptr, float[] floats, int off, int len) {
+		return write_(memory, ptr, floats, off, len);
 	}
 
 	public int write_(int ptr, int value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 24) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 16) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, int[] ints) {
-		for (int value : ints)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, ints);
+	}
+
+	public int write_(int ptr, int[] ints, int off, int len) {
+		return write_(memory, ptr, ints, off, len);
 	}
 
 	public int write_(int ptr, long value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 56) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 48) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 40) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 32) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 24) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 16) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, long[] longs) {
-		for (long value : longs)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, longs);
+	}
+
+	public int write_(int ptr, long[] longs, int off, int len) {
+		return write_(memory, ptr, longs, off, len);
 	}
 
 	public int write_(int ptr, short value) {
-		ptr = write_(memory, ptr, (byte) ((value >> 8) & 0xff));
-		ptr = write_(memory, ptr, (byte) ((value >> 0) & 0xff));
-		return ptr;
+		return write_(memory, ptr, value);
 	}
 
 	public int write_(int ptr, short[] shorts) {
-		for (short value : shorts)
-			ptr = write_(memory, ptr, value);
-		return ptr;
+		return write_(memory, ptr, shorts);
+	}
+
+	public int write_(int ptr, short[] shorts, int off, int len) {
+		return write_(memory, ptr, shorts, off, len);
+	}
+
+	public int write_(int ptr, String str) {
+		return write_(memory, ptr, str);
+	}
+
+	public long write_(long ptr, boolean value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, boolean[] booleans) {
+		return write_(memory, ptr, booleans);
+	}
+
+	public long write_(long ptr, boolean[] booleans, int off, int len) {
+		return write_(memory, ptr, booleans, off, len);
+	}
+
+	public long write_(long ptr, byte value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, byte[] bytes) {
+		return write_(memory, ptr, bytes);
+	}
+
+	public long write_(long ptr, byte[] bytes, int off, int len) {
+		return write_(memory, ptr, bytes, off, len);
+	}
+
+	public long write_(long ptr, char value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, char[] chars) {
+		return write_(memory, ptr, chars);
+	}
+
+	public long write_(long ptr, char[] chars, int off, int len) {
+		return write_(memory, ptr, chars, off, len);
+	}
+
+	public long write_(long ptr, double value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, double[] doubles) {
+		return write_(memory, ptr, doubles);
+	}
+
+	public long write_(long ptr, double[] doubles, int off, int len) {
+		return write_(memory, ptr, doubles, off, len);
+	}
+
+	public long write_(long ptr, float value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, float[] floats) {
+		return write_(memory, ptr, floats);
+	}
+
+	public long write_(long ptr, float[] floats, int off, int len) {
+		return write_(memory, ptr, floats, off, len);
+	}
+
+	public long write_(long ptr, int value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, int[] ints) {
+		return write_(memory, ptr, ints);
+	}
+
+	public long write_(long ptr, int[] ints, int off, int len) {
+		return write_(memory, ptr, ints, off, len);
+	}
+
+	public long write_(long ptr, long value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, long[] longs) {
+		return write_(memory, ptr, longs);
+	}
+
+	public long write_(long ptr, long[] longs, int off, int len) {
+		return write_(memory, ptr, longs, off, len);
+	}
+
+	public long write_(long ptr, short value) {
+		return write_(memory, ptr, value);
+	}
+
+	public long write_(long ptr, short[] shorts) {
+		return write_(memory, ptr, shorts);
+	}
+
+	public long write_(long ptr, short[] shorts, int off, int len) {
+		return write_(memory, ptr, shorts, off, len);
+	}
+
+	public long write_(long ptr, String str) {
+		return write_(memory, ptr, str);
 	}
 
 }
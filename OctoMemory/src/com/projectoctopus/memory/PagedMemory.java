@@ -0,0 +1,682 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Represents a memory made of fixed-size heap pages, reached through a page table, that grows without copying<br>
+ * An allocation that doesn't fit adds pages at the end of the memory (at least doubling it, up to its maximum size),
+ * and the existing pages never move : only the page table is resized<br>
+ * Pages whose bytes are all free can be given back to the garbage collector with {@link #trim()}, they read as zeros
+ * and come back upon their first write<br>
+ * Values crossing a page boundary are read and written transparently, a byte at a time<br>
+ * <b>Snapshots :</b> {@link #snapshot()} gives a read-only view of the memory in constant time, sharing its pages. A
+ * page is copied the first time it's written after a snapshot (and the page table the first time any page is), so that
+ * snapshots never see later writes. A snapshot can be read by other threads while the memory keeps being written, but
+ * has to be taken by the writing thread (or while writes are held off)<br>
+ * <b>Compression :</b> every access marks its page as touched. {@link #compress()} sweeps the pages, packing those left
+ * untouched since the previous sweep with a fast LZ codec (when that saves a quarter of the page at least), and the
+ * next access to a packed page unpacks it. Calling it periodically keeps the cold pages packed, for the cost of an
+ * unpacking on their next access<br>
+ * {@link Memory#data} and {@link Memory#alloc_f} are <b>null</b>
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class PagedMemory extends Memory {
+
+	/**
+	 * The maximum paged memory size value (the allocation flags are indexed by int words, 2^30 of them at most)
+	 */
+	public static final long MAX_PAGED_SIZE = 1L << 36;
+
+	/**
+	 * The default page size, 64KB
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1 << 16;
+
+	final int shift;	/* pages are 2^shift bytes */
+
+	final int mask;
+
+	final int page_words;	/* flag words per page, 2^(shift - 6) */
+
+	final long max;
+
+	long size;
+
+	byte[][] pages;
+
+	long[][] flags;
+
+	private final byte[] zero;	/* shared by the pages not backed yet, never written */
+
+	private final long[] zero_words;
+
+	/**
+	 * The pages (and flag pages) this memory may write in place, those whose owner is the current epoch<br>
+	 * Taking a snapshot moves on to a new epoch, so that every existing page is copied before being written
+	 */
+	private int[] owners, flag_owners;
+
+	private int epoch;
+
+	private boolean shared;	/* whether the page table is shared with a snapshot */
+
+	/**
+	 * The packed pages, whose entry in {@link #pages} is <b>null</b> (<b>null</b> until a page is packed)
+	 */
+	private byte[][] packed;
+
+	/**
+	 * Each page's temperature : {@link #HOT} when touched since the last sweep, {@link #COLD} when not, {@link #RAW}
+	 * when it didn't pack well and wasn't touched since
+	 */
+	private byte[] touched;
+
+	private static final byte HOT = 0, COLD = 1, RAW = 2;
+
+	private MemoryLZ codec;
+
+	private byte[] scratch;
+
+	private byte[][] unpacked;	/* a snapshot's unpacked pages */
+
+	private final boolean read_only;
+
+	/**
+	 * Initializes a new size-byte paged Memory of 64KB pages, growing up to {@link #MAX_PAGED_SIZE}
+	 * @param size The initial size of the new Memory in bytes (rounded up to a whole page)
+	 * @throws IllegalArgumentException
+	 */
+	public PagedMemory(long size) {
+		this(size, DEFAULT_PAGE_SIZE, MAX_PAGED_SIZE);
+	}
+
+	/**
+	 * Initializes a new size-byte paged Memory
+	 * @param size The initial size of the new Memory in bytes (rounded up to a whole page)
+	 * @param page The size of a page in bytes, a power of two from 64 bytes to 1GB
+	 * @param max The size the Memory can grow to in bytes
+	 * @throws IllegalArgumentException
+	 */
+	public PagedMemory(long size, int page, long max) {
+		super(check(size, page, max));
+		this.shift = Integer.numberOfTrailingZeros(page);
+		this.mask = page - 1;
+		this.page_words = page >>> 6;
+		this.max = max & -page;
+		this.size = (size + page - 1) & -page;
+		zero = new byte[page];
+		zero_words = new long[page_words];
+		int count = (int) (this.size >>> shift);
+		pages = new byte[count][];
+		flags = new long[pages.length][];
+		owners = new int[count];
+		flag_owners = new int[count];
+		touched = new byte[count];
+		for (int p = 0; p < count; p++) {
+			pages[p] = new byte[page];
+			flags[p] = new long[page_words];
+		}
+		read_only = false;
+	}
+
+	/**
+	 * Initializes a read-only snapshot of a paged Memory, sharing its pages
+	 * @param source The memory to snapshot
+	 */
+	private PagedMemory(PagedMemory source) {
+		super(source.size);
+		shift = source.shift;
+		mask = source.mask;
+		page_words = source.page_words;
+		max = size = source.size;
+		zero = source.zero;
+		zero_words = source.zero_words;
+		pages = source.pages;
+		flags = source.flags;
+		packed = source.packed;
+		touched = new byte[pages.length];
+		order = source.order;
+		little = source.little;
+		read_only = true;
+		allocator.stale = true; /* its free extents are read off the flags upon asking */
+	}
+
+	static long check(long size, int page, long max) {
+		if (page < 64 || page > 1 << 30 || Integer.bitCount(page) != 1) throw new IllegalArgumentException("Page size must be a power of two between 64 bytes and 1GB");
+		if (max > MAX_PAGED_SIZE) throw new IllegalArgumentException("Memory size can't exceed " + MAX_PAGED_SIZE + " bytes.");
+		size = (size + page - 1) & -page; /* whole pages */
+		if (MIN_SIZE > size || size > max) throw new IllegalArgumentException("Memory size must be between : " + MIN_SIZE + " bytes and " + max + " bytes.");
+		return size;
+	}
+
+	/**
+	 * Adds pages at the end of the memory, the existing ones staying put
+	 * @param bytes The number of bytes to add (rounded up to a whole page)
+	 * @return The memory's new size
+	 * @throws IllegalArgumentException if the memory would grow past its maximum size
+	 */
+	public long grow(long bytes) {
+		long added = (bytes + mask) & -(mask + 1L);
+		if (added <= 0 || added > max - size) throw new IllegalArgumentException("Memory can't grow by " + bytes + " bytes past " + max);
+		unshare_();
+		int count = (int) ((size + added) >>> shift);
+		if (count > pages.length) { /* only the page table is copied */
+			int length = (int) Math.min(Math.max(count, (long) pages.length << 1), max >>> shift);
+			pages = Arrays.copyOf(pages, length);
+			flags = Arrays.copyOf(flags, length);
+			owners = Arrays.copyOf(owners, length);
+			flag_owners = Arrays.copyOf(flag_owners, length);
+			touched = Arrays.copyOf(touched, length);
+			if (packed != null) packed = Arrays.copyOf(packed, length);
+		}
+		for (int p = (int) (size >>> shift); p < count; p++) {
+			pages[p] = zero; /* backed upon first write */
+			flags[p] = zero_words;
+			owners[p] = flag_owners[p] = -1;
+		}
+		synchronized (allocator) { /* statistics rebuilding the extents read the page table */
+			size += added;
+			allocator.extend(added);
+		}
+		return size;
+	}
+
+	/**
+	 * Gives the pages holding no allocated byte back to the garbage collector
+	 * @return The number of pages released
+	 */
+	public int trim() {
+		unshare_();
+		int released = 0, count = (int) (size >>> shift);
+		for (int p = 0; p < count; p++) {
+			if (pages[p] == zero) continue;
+			long[] words = flags[p];
+			int i = 0;
+			while (i < words.length && words[i] == 0)
+				i++;
+			if (i < words.length) continue; /* some byte is allocated */
+			pages[p] = zero;
+			flags[p] = zero_words;
+			owners[p] = flag_owners[p] = -1;
+			if (packed != null) packed[p] = null;
+			released++;
+		}
+		return released;
+	}
+
+	/**
+	 * @return The number of pages backed by an unpacked array
+	 */
+	public int resident() {
+		int resident = 0, count = (int) (size >>> shift);
+		for (int p = 0; p < count; p++)
+			if (pages[p] != zero && pages[p] != null) resident++;
+		return resident;
+	}
+
+	/**
+	 * Packs the pages left untouched since the previous call, see {@link PagedMemory}
+	 * @return The number of pages packed
+	 */
+	public int compress() {
+		unshare_();
+		if (codec == null) {
+			codec = new MemoryLZ();
+			scratch = new byte[(mask + 1) - ((mask + 1) >>> 2)]; /* packing must save a quarter of the page */
+		}
+		int count = (int) (size >>> shift), compressed = 0;
+		for (int p = 0; p < count; p++) {
+			byte[] page = pages[p];
+			if (page == null || page == zero) continue;
+			if (touched[p] != COLD) { /* a hot page gets until the next sweep */
+				if (touched[p] == HOT) touched[p] = COLD;
+				continue;
+			}
+			int n = codec.compress(page, page.length, scratch);
+			if (n == -1) {
+				touched[p] = RAW; /* not tried again until touched */
+				continue;
+			}
+			if (packed == null) packed = new byte[pages.length][];
+			packed[p] = Arrays.copyOf(scratch, n);
+			pages[p] = null;
+			compressed++;
+		}
+		return compressed;
+	}
+
+	/**
+	 * @return The number of packed pages
+	 */
+	public int compressed() {
+		int compressed = 0, count = (int) (size >>> shift);
+		for (int p = 0; p < count; p++)
+			if (pages[p] == null) compressed++;
+		return compressed;
+	}
+
+	/**
+	 * @return The number of bytes held by the memory's pages, packed or not (flags excluded)
+	 */
+	public long footprint() {
+		long footprint = 0;
+		int count = (int) (size >>> shift);
+		for (int p = 0; p < count; p++)
+			if (pages[p] == null) footprint += packed[p].length;
+			else if (pages[p] != zero) footprint += mask + 1;
+		return footprint;
+	}
+
+	/**
+	 * @return The size of a page in bytes
+	 */
+	public int page_size() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return The size the memory can grow to in bytes
+	 */
+	public long max_size() {
+		return max;
+	}
+
+	/**
+	 * Takes a read-only snapshot of the memory, in constant time
+	 * @return A memory reading as this one does now, whatever is written to this one afterwards
+	 */
+	public PagedMemory snapshot() {
+		if (read_only) return this;
+		shared = true;
+		epoch++; /* every page now belongs to the snapshot as well */
+		return new PagedMemory(this);
+	}
+
+	/**
+	 * @return Whether this memory is a snapshot
+	 */
+	public boolean is_read_only() {
+		return read_only;
+	}
+
+	/**
+	 * Takes a copy of the page table if it's shared with a snapshot, before it gets written
+	 */
+	private void unshare_() {
+		if (read_only) throw new UnsupportedOperationException("Snapshots are read-only");
+		if (!shared) return;
+		pages = pages.clone(); /* the page references only */
+		flags = flags.clone();
+		if (packed != null) packed = packed.clone();
+		shared = false;
+	}
+
+	@Override
+	long allocate(long size) {
+		if (read_only) throw new UnsupportedOperationException("Snapshots are read-only");
+		synchronized (allocator) {
+			long ptr = allocator.alloc(this, size);
+			if (ptr == -1 && this.size < max) {
+				grow(Math.min(Math.max(this.size, size), max - this.size)); /* at least doubles, or fits size */
+				ptr = allocator.alloc(this, size);
+			}
+			if (ptr != -1) flag_range(this, ptr, size, true);
+			return ptr;
+		}
+	}
+
+	@Override
+	void release(long ptr, long size) {
+		if (read_only) throw new UnsupportedOperationException("Snapshots are read-only");
+		super.release(ptr, size);
+	}
+
+	/**
+	 * Gives a page to write to, backing it first if it's the zero page or copying it if a snapshot shares it
+	 * @param p The page's index
+	 * @return The page
+	 */
+	private byte[] page_(int p) {
+		if (read_only) throw new UnsupportedOperationException("Snapshots are read-only");
+		byte[] page = pages[p];
+		touched[p] = HOT;
+		if (page == null) return unpack_(p);
+		if (owners[p] != epoch) {
+			unshare_();
+			page = pages[p] = page.clone();
+			owners[p] = epoch;
+		}
+		return page;
+	}
+
+	/**
+	 * Gives a page to read from, unpacking it first if it's packed
+	 * @param p The page's index
+	 * @return The page
+	 */
+	private byte[] read_(int p) {
+		byte[] page = pages[p];
+		touched[p] = HOT;
+		return (page != null) ? page : unpack_(p);
+	}
+
+	/**
+	 * Unpacks a page, in place for this memory, aside for a snapshot (which never changes its page table)
+	 * @param p The page's index
+	 * @return The unpacked page
+	 */
+	private byte[] unpack_(int p) {
+		if (read_only) synchronized (this) { /* readers may share a snapshot */
+			if (unpacked == null) unpacked = new byte[pages.length][];
+			if (unpacked[p] == null) MemoryLZ.decompress(packed[p], unpacked[p] = new byte[mask + 1]);
+			return unpacked[p];
+		}
+		byte[] page = new byte[mask + 1];
+		MemoryLZ.decompress(packed[p], page);
+		unshare_();
+		pages[p] = page;
+		packed[p] = null;
+		owners[p] = epoch; /* a fresh copy, the snapshots keep the packed one */
+		return page;
+	}
+
+	/**
+	 * Gives a page's flags to write to, backing them first if they're the zero page or copying them if a snapshot
+	 * shares them
+	 * @param p The page's index
+	 * @return The page's flag words
+	 */
+	private long[] words_(int p) {
+		if (read_only) throw new UnsupportedOperationException("Snapshots are read-only");
+		long[] words = flags[p];
+		if (flag_owners[p] != epoch) {
+			unshare_();
+			words = flags[p] = words.clone();
+			flag_owners[p] = epoch;
+		}
+		return words;
+	}
+
+	@Override
+	long capacity() {
+		return size;
+	}
+
+	@Override
+	int words() {
+		return (int) (size >>> 6);
+	}
+
+	@Override
+	long word_(int i) {
+		return flags[i >>> (shift - 6)][i & (page_words - 1)];
+	}
+
+	@Override
+	void flag_(int i, long mask, boolean allocated) {
+		if (!allocated && flags[i >>> (shift - 6)] == zero_words) return; /* already free */
+		long[] words = words_(i >>> (shift - 6));
+		int w = i & (page_words - 1);
+		words[w] = allocated ? words[w] | mask : words[w] & ~mask;
+	}
+
+	@Override
+	void fill_words(int from, int to, long word) {
+		while (from < to) { /* one fill per page crossed */
+			int p = from >>> (shift - 6), w = from & (page_words - 1), n = Math.min(to - from, page_words - w);
+			if (word != 0 || flags[p] != zero_words) Arrays.fill(words_(p), w, w + n, word);
+			from += n;
+		}
+	}
+
+	@Override
+	byte get_(long ptr) {
+		return read_((int) (ptr >>> shift))[(int) ptr & mask];
+	}
+
+	@Override
+	void put_(long ptr, byte value) {
+		page_((int) (ptr >>> shift))[(int) ptr & mask] = value;
+	}
+
+	@Override
+	short get_short(long ptr) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Short.BYTES) return (short) get_bits(ptr, Short.BYTES);
+		byte[] page = read_((int) (ptr >>> shift));
+		return little ? (short) MemoryAccess.SHORT_LE.get(page, off) : (short) MemoryAccess.SHORT.get(page, off);
+	}
+
+	@Override
+	void put_short(long ptr, short value) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Short.BYTES) put_bits(ptr, Short.BYTES, value);
+		else if (little) MemoryAccess.SHORT_LE.set(page_((int) (ptr >>> shift)), off, value);
+		else MemoryAccess.SHORT.set(page_((int) (ptr >>> shift)), off, value);
+	}
+
+	@Override
+	char get_char(long ptr) {
+		return (char) get_short(ptr);
+	}
+
+	@Override
+	void put_char(long ptr, char value) {
+		put_short(ptr, (short) value);
+	}
+
+	@Override
+	int get_int(long ptr) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Integer.BYTES) return (int) get_bits(ptr, Integer.BYTES);
+		byte[] page = read_((int) (ptr >>> shift));
+		return little ? (int) MemoryAccess.INT_LE.get(page, off) : (int) MemoryAccess.INT.get(page, off);
+	}
+
+	@Override
+	void put_int(long ptr, int value) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Integer.BYTES) put_bits(ptr, Integer.BYTES, value);
+		else if (little) MemoryAccess.INT_LE.set(page_((int) (ptr >>> shift)), off, value);
+		else MemoryAccess.INT.set(page_((int) (ptr >>> shift)), off, value);
+	}
+
+	@Override
+	long get_long(long ptr) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Long.BYTES) return get_bits(ptr, Long.BYTES);
+		byte[] page = read_((int) (ptr >>> shift));
+		return little ? (long) MemoryAccess.LONG_LE.get(page, off) : (long) MemoryAccess.LONG.get(page, off);
+	}
+
+	@Override
+	void put_long(long ptr, long value) {
+		int off = (int) ptr & mask;
+		if (off > mask + 1 - Long.BYTES) put_bits(ptr, Long.BYTES, value);
+		else if (little) MemoryAccess.LONG_LE.set(page_((int) (ptr >>> shift)), off, value);
+		else MemoryAccess.LONG.set(page_((int) (ptr >>> shift)), off, value);
+	}
+
+	@Override
+	void get_(long ptr, byte[] dst, int off, int len) {
+		while (len > 0) { /* one bulk copy per page crossed */
+			int at = (int) ptr & mask, n = Math.min(len, mask + 1 - at);
+			System.arraycopy(read_((int) (ptr >>> shift)), at, dst, off, n);
+			ptr += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	void put_(long ptr, byte[] src, int off, int len) {
+		while (len > 0) { /* one bulk copy per page crossed */
+			int at = (int) ptr & mask, n = Math.min(len, mask + 1 - at);
+			System.arraycopy(src, off, page_((int) (ptr >>> shift)), at, n);
+			ptr += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	void get_(long ptr, short[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = get_short(ptr + (long) i * Short.BYTES);
+	}
+
+	@Override
+	void put_(long ptr, short[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_short(ptr + (long) i * Short.BYTES, src[off + i]);
+	}
+
+	@Override
+	void get_(long ptr, char[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = get_char(ptr + (long) i * Character.BYTES);
+	}
+
+	@Override
+	void put_(long ptr, char[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_char(ptr + (long) i * Character.BYTES, src[off + i]);
+	}
+
+	@Override
+	void get_(long ptr, int[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = get_int(ptr + (long) i * Integer.BYTES);
+	}
+
+	@Override
+	void put_(long ptr, int[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_int(ptr + (long) i * Integer.BYTES, src[off + i]);
+	}
+
+	@Override
+	void get_(long ptr, long[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = get_long(ptr + (long) i * Long.BYTES);
+	}
+
+	@Override
+	void put_(long ptr, long[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_long(ptr + (long) i * Long.BYTES, src[off + i]);
+	}
+
+	@Override
+	void get_(long ptr, float[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = Float.intBitsToFloat(get_int(ptr + (long) i * Float.BYTES));
+	}
+
+	@Override
+	void put_(long ptr, float[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_int(ptr + (long) i * Float.BYTES, Float.floatToRawIntBits(src[off + i]));
+	}
+
+	@Override
+	void get_(long ptr, double[] dst, int off, int len) {
+		for (int i = 0; i < len; i++)
+			dst[off + i] = Double.longBitsToDouble(get_long(ptr + (long) i * Double.BYTES));
+	}
+
+	@Override
+	void put_(long ptr, double[] src, int off, int len) {
+		for (int i = 0; i < len; i++)
+			put_long(ptr + (long) i * Double.BYTES, Double.doubleToRawLongBits(src[off + i]));
+	}
+
+	@Override
+	ByteBuffer view_(long ptr, long size) {
+		int at = (int) ptr & mask, p = (int) (ptr >>> shift);
+		ByteBuffer view = ByteBuffer.wrap(read_only ? read_(p) : page_(p), at, (int) Math.min(size, mask + 1 - at)).slice(); /* up to the end of the page */
+		return read_only ? view.asReadOnlyBuffer() : view;
+	}
+
+	@Override
+	ByteBuffer peek_(long ptr, long size) {
+		int at = (int) ptr & mask;
+		return ByteBuffer.wrap(read_((int) (ptr >>> shift)), at, (int) Math.min(size, mask + 1 - at)).slice(); /* shared with snapshots, never written */
+	}
+
+	@Override
+	void copy_(long src, long dst, long size) {
+		if (dst <= src) { /* front to back, one piece per page crossed on either side */
+			for (long done = 0; done < size;) {
+				long s = src + done, d = dst + done;
+				int n = (int) Math.min(size - done, Math.min(mask + 1 - (s & mask), mask + 1 - (d & mask)));
+				System.arraycopy(read_((int) (s >>> shift)), (int) s & mask, page_((int) (d >>> shift)), (int) d & mask, n);
+				done += n;
+			}
+		} else { /* back to front */
+			for (long left = size; left > 0;) {
+				long s = src + left, d = dst + left; /* exclusive ends */
+				int n = (int) Math.min(left, Math.min(((s - 1) & mask) + 1, ((d - 1) & mask) + 1));
+				System.arraycopy(read_((int) ((s - n) >>> shift)), (int) (s - n) & mask, page_((int) ((d - n) >>> shift)), (int) (d - n) & mask, n);
+				left -= n;
+			}
+		}
+	}
+
+	@Override
+	void fill_(long ptr, long size, byte value) {
+		long end = ptr + size;
+		while (ptr < end) { /* one fill per page crossed */
+			int p = (int) (ptr >>> shift), at = (int) ptr & mask, n = (int) Math.min(end - ptr, mask + 1 - at);
+			if (value != 0 || pages[p] != zero) Arrays.fill(page_(p), at, at + n, value); /* unbacked pages are zeros already */
+			ptr += n;
+		}
+	}
+
+	/**
+	 * Reads a value straddling two pages, a byte at a time
+	 * @param ptr The pointer of the value's first byte
+	 * @param n The value's size in bytes
+	 * @return The value's bits
+	 */
+	private long get_bits(long ptr, int n) {
+		long bits = 0;
+		for (int i = 0; i < n; i++)
+			bits = bits << 8 | (get_(ptr + i) & 0xff);
+		return little ? Long.reverseBytes(bits) >>> (64 - 8 * n) : bits;
+	}
+
+	/**
+	 * Writes a value straddling two pages, a byte at a time
+	 * @param ptr The pointer of the value's first byte
+	 * @param n The value's size in bytes
+	 * @param bits The value's bits
+	 */
+	private void put_bits(long ptr, int n, long bits) {
+		if (little) bits = Long.reverseBytes(bits) >>> (64 - 8 * n);
+		for (int i = n - 1; i >= 0; i--, bits >>>= 8)
+			put_(ptr + i, (byte) bits);
+	}
+
+}
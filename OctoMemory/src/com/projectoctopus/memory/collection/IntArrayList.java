@@ -0,0 +1,134 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.collection;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryReader;
+import com.projectoctopus.memory.MemoryRelocation;
+import com.projectoctopus.memory.MemoryWriter;
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * A growable list of <code>int</code>s stored in a memory, without boxing<br>
+ * The elements lie end to end in a single range allocated with {@link Memory#m_alloc(Memory, long)}, twice as large
+ * each time it's full, and are accessed through {@link MemoryReader} and {@link MemoryWriter}<br>
+ * The list isn't thread-safe, {@link #relocate(MemoryRelocation)} must be called after compacting its memory and
+ * {@link #free()} gives its range back
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class IntArrayList extends PrimitiveArrayList {
+
+	/**
+	 * Creates an empty list in a memory
+	 * @param memory The memory to allocate the list into
+	 * @throws MemoryException if the memory can't fit the list
+	 */
+	public IntArrayList(Memory memory) throws MemoryException {
+		this(memory, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty list in a memory
+	 * @param memory The memory to allocate the list into
+	 * @param capacity The number of elements to make room for
+	 * @throws MemoryException if the memory can't fit the list
+	 */
+	public IntArrayList(Memory memory, int capacity) throws MemoryException {
+		super(memory, capacity, Integer.BYTES);
+	}
+
+	/**
+	 * Appends an element
+	 * @param value The element
+	 * @throws MemoryException if the memory can't fit it
+	 */
+	public void add(int value) throws MemoryException {
+		ensure_(size + 1L);
+		MemoryWriter.write_(memory, ptr_(size++), value);
+	}
+
+	/**
+	 * Appends elements
+	 * @param values The elements
+	 * @param off The first element's index
+	 * @param len The number of elements
+	 * @throws MemoryException if the memory can't fit them
+	 */
+	public void add(int[] values, int off, int len) throws MemoryException {
+		ensure_((long) size + len);
+		MemoryWriter.write_(memory, ptr_(size), values, off, len);
+		size += len;
+	}
+
+	/**
+	 * @param index The element's index
+	 * @return The element
+	 * @throws IndexOutOfBoundsException if there's no such element
+	 */
+	public int get(int index) {
+		check_(index);
+		return MemoryReader.read_int(memory, ptr_(index));
+	}
+
+	/**
+	 * Replaces an element
+	 * @param index The element's index
+	 * @param value The new element
+	 * @return The former element
+	 * @throws IndexOutOfBoundsException if there's no such element
+	 */
+	public int set(int index, int value) {
+		int former = get(index);
+		MemoryWriter.write_(memory, ptr_(index), value);
+		return former;
+	}
+
+	/**
+	 * Removes an element, shifting the following ones down
+	 * @param index The element's index
+	 * @return The removed element
+	 * @throws IndexOutOfBoundsException if there's no such element
+	 */
+	public int remove(int index) {
+		int former = get(index);
+		remove_(index);
+		return former;
+	}
+
+	/**
+	 * Copies the elements out
+	 * @param dst The array to copy them into
+	 * @param off The index to copy them at
+	 * @return dst
+	 */
+	public int[] to_array(int[] dst, int off) {
+		MemoryReader.read_int_array(memory, ptr, dst, off, size);
+		return dst;
+	}
+
+	/**
+	 * @return The elements, in a new array
+	 */
+	public int[] to_array() {
+		return to_array(new int[size], 0);
+	}
+
+}
@@ -0,0 +1,291 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.collection;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryReader;
+import com.projectoctopus.memory.MemoryRelocation;
+import com.projectoctopus.memory.MemoryWriter;
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * An <code>int</code> to <code>long</code> hash map stored in a memory, without boxing<br>
+ * Entries are open-addressed in a single range allocated with {@link Memory#m_alloc(Memory, long)}, each one a key
+ * followed by its value ({@value #ENTRY_SIZE} bytes), and linearly probed<br>
+ * Key 0 marks an empty slot, its own entry being held aside by the map<br>
+ * The table doubles past 3/4 full, and removals shift the following entries back instead of leaving tombstones<br>
+ * The map isn't thread-safe, {@link #relocate(MemoryRelocation)} must be called after compacting its memory and
+ * {@link #free()} gives its range back
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class IntLongHashMap {
+
+	public static final int		ENTRY_SIZE		= Integer.BYTES + Long.BYTES;
+	private static final int	INITIAL_SLOTS	= 16;
+
+	private final Memory	memory;
+	private long			ptr;
+	private int				slots;		/* a power of two */
+	private int				size;		/* entries in the table, key 0 excluded */
+	private boolean			zero;		/* whether key 0 is mapped */
+	private long			zero_value;
+
+	/**
+	 * Creates an empty map in a memory
+	 * @param memory The memory to allocate the map into
+	 * @throws MemoryException if the memory can't fit the map
+	 */
+	public IntLongHashMap(Memory memory) throws MemoryException {
+		this(memory, INITIAL_SLOTS >> 1);
+	}
+
+	/**
+	 * Creates an empty map in a memory
+	 * @param memory The memory to allocate the map into
+	 * @param expected The number of entries to make room for
+	 * @throws MemoryException if the memory can't fit the map
+	 */
+	public IntLongHashMap(Memory memory, int expected) throws MemoryException {
+		this.memory = memory;
+		this.slots = slots_(expected);
+		this.ptr = m_alloc(memory, (long) slots * ENTRY_SIZE);
+	}
+
+	/**
+	 * Gives the number of slots holding entries at most 3/4 full
+	 * @param entries The number of entries
+	 * @return A power of two
+	 */
+	private static int slots_(int entries) {
+		long needed = Math.max(INITIAL_SLOTS, (long) entries * 4 / 3 + 1);
+		if (needed > 1 << 30) throw new IllegalArgumentException("Too many entries : " + entries);
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	/**
+	 * Spreads a key over the slots
+	 * @param key A key
+	 * @param mask The slots minus one
+	 * @return The key's home slot
+	 */
+	private static int slot_(int key, int mask) {
+		int h = key * 0x9e3779b9;
+		return (h ^ h >>> 16) & mask;
+	}
+
+	/**
+	 * Finds a key's slot
+	 * @param key A key, not 0
+	 * @return The key's slot if mapped, else the empty slot it would be put into
+	 */
+	private int find_(int key) {
+		int mask = slots - 1;
+		for (int slot = slot_(key, mask);; slot = slot + 1 & mask) {
+			int k = MemoryReader.read_int(memory, ptr + (long) slot * ENTRY_SIZE);
+			if (k == key || k == 0) return slot;
+		}
+	}
+
+	/**
+	 * @param key A key
+	 * @return Whether the key is mapped
+	 */
+	public boolean contains(int key) {
+		if (key == 0) return zero;
+		return MemoryReader.read_int(memory, ptr + (long) find_(key) * ENTRY_SIZE) != 0;
+	}
+
+	/**
+	 * @param key A key
+	 * @param missing The value to return if the key isn't mapped
+	 * @return The key's value<br>
+	 *         <b>missing</b> if it isn't mapped
+	 */
+	public long get(int key, long missing) {
+		if (key == 0) return zero ? zero_value : missing;
+		long entry = ptr + (long) find_(key) * ENTRY_SIZE;
+		if (MemoryReader.read_int(memory, entry) == 0) return missing;
+		return MemoryReader.read_long(memory, entry + Integer.BYTES);
+	}
+
+	/**
+	 * Maps a key to a value
+	 * @param key A key
+	 * @param value Its value
+	 * @return Whether the key is a new one
+	 * @throws MemoryException if the memory can't fit the grown table
+	 */
+	public boolean put(int key, long value) throws MemoryException {
+		if (key == 0) {
+			boolean added = !zero;
+			zero = true;
+			zero_value = value;
+			return added;
+		}
+		long entry = ptr + (long) find_(key) * ENTRY_SIZE;
+		if (MemoryReader.read_int(memory, entry) == key) {
+			MemoryWriter.write_(memory, entry + Integer.BYTES, value);
+			return false;
+		}
+		if ((size + 1) * 4L > slots * 3L) { /* grows first, the key's slot moves */
+			grow_();
+			entry = ptr + (long) find_(key) * ENTRY_SIZE;
+		}
+		MemoryWriter.write_(memory, entry, key);
+		MemoryWriter.write_(memory, entry + Integer.BYTES, value);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds to a key's value, mapping it to the delta if it isn't mapped
+	 * @param key A key
+	 * @param delta The value to add
+	 * @return The key's new value
+	 * @throws MemoryException if the memory can't fit the grown table
+	 */
+	public long add(int key, long delta) throws MemoryException {
+		long value = get(key, 0) + delta;
+		put(key, value);
+		return value;
+	}
+
+	/**
+	 * Doubles the slots, moving every entry over
+	 * @throws MemoryException if the memory can't fit the new table
+	 */
+	private void grow_() throws MemoryException {
+		if (slots == 1 << 30) throw new MemoryException("Map full");
+		long table = m_alloc(memory, (long) slots * 2 * ENTRY_SIZE); /* first, so that a failure leaves the table as it was */
+		long old = ptr;
+		int count = slots;
+		slots <<= 1;
+		ptr = table;
+		for (int i = 0; i < count; i++) {
+			long entry = old + (long) i * ENTRY_SIZE;
+			int key = MemoryReader.read_int(memory, entry);
+			if (key == 0) continue;
+			long moved = ptr + (long) find_(key) * ENTRY_SIZE;
+			MemoryWriter.write_(memory, moved, key);
+			MemoryWriter.write_(memory, moved + Integer.BYTES, MemoryReader.read_long(memory, entry + Integer.BYTES));
+		}
+		m_free(memory, old, (long) count * ENTRY_SIZE);
+	}
+
+	/**
+	 * Unmaps a key
+	 * @param key A key
+	 * @return Whether the key was mapped
+	 */
+	public boolean remove(int key) {
+		if (key == 0) {
+			boolean removed = zero;
+			zero = false;
+			zero_value = 0;
+			return removed;
+		}
+		int mask = slots - 1;
+		int hole = find_(key);
+		if (MemoryReader.read_int(memory, ptr + (long) hole * ENTRY_SIZE) == 0) return false;
+		for (int slot = hole + 1 & mask;; slot = slot + 1 & mask) { /* shifts back the entries probed past the hole */
+			long entry = ptr + (long) slot * ENTRY_SIZE;
+			int k = MemoryReader.read_int(memory, entry);
+			if (k == 0) break;
+			int home = slot_(k, mask);
+			if ((slot - home & mask) < (slot - hole & mask)) continue; /* its home lies between the hole and it */
+			long dst = ptr + (long) hole * ENTRY_SIZE;
+			MemoryWriter.write_(memory, dst, k);
+			MemoryWriter.write_(memory, dst + Integer.BYTES, MemoryReader.read_long(memory, entry + Integer.BYTES));
+			hole = slot;
+		}
+		long dst = ptr + (long) hole * ENTRY_SIZE;
+		MemoryWriter.write_(memory, dst, 0);
+		MemoryWriter.write_(memory, dst + Integer.BYTES, 0L);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Unmaps every key, keeping the slots
+	 * @throws MemoryException if the memory can't fit the cleared table
+	 */
+	public void clear() throws MemoryException {
+		m_free(memory, ptr, (long) slots * ENTRY_SIZE);
+		ptr = m_alloc(memory, (long) slots * ENTRY_SIZE); /* allocated ranges come zeroed */
+		size = 0;
+		zero = false;
+		zero_value = 0;
+	}
+
+	/**
+	 * Visits every entry, in slot order
+	 * @param visitor The visitor
+	 */
+	public void for_each(Visitor visitor) {
+		if (zero) visitor.visit(0, zero_value);
+		for (int i = 0; i < slots; i++) {
+			long entry = ptr + (long) i * ENTRY_SIZE;
+			int key = MemoryReader.read_int(memory, entry);
+			if (key != 0) visitor.visit(key, MemoryReader.read_long(memory, entry + Integer.BYTES));
+		}
+	}
+
+	/**
+	 * A visitor of the map's entries
+	 */
+	public static interface Visitor {
+		void visit(int key, long value);
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	public int size() {
+		return size + (zero ? 1 : 0);
+	}
+
+	/**
+	 * @return Whether the map has no entry
+	 */
+	public boolean is_empty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Fixes the map's pointer up after its memory was compacted
+	 * @param moved The runs the compaction moved
+	 */
+	public void relocate(MemoryRelocation moved) {
+		ptr = moved.relocate(ptr);
+	}
+
+	/**
+	 * Gives the map's range back to its memory, the map mustn't be used past it
+	 */
+	public void free() {
+		m_free(memory, ptr, (long) slots * ENTRY_SIZE);
+		size = slots = 0;
+	}
+
+}
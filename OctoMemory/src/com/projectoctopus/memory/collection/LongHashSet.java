@@ -0,0 +1,240 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.collection;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import java.util.function.LongConsumer;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryReader;
+import com.projectoctopus.memory.MemoryRelocation;
+import com.projectoctopus.memory.MemoryWriter;
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * A <code>long</code> hash set stored in a memory, without boxing<br>
+ * Elements are open-addressed in a single range allocated with {@link Memory#m_alloc(Memory, long)} and linearly
+ * probed<br>
+ * 0 marks an empty slot, its own membership being held aside by the set<br>
+ * The table doubles past 3/4 full, and removals shift the following elements back instead of leaving tombstones<br>
+ * The set isn't thread-safe, {@link #relocate(MemoryRelocation)} must be called after compacting its memory and
+ * {@link #free()} gives its range back
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+public class LongHashSet {
+
+	private static final int INITIAL_SLOTS = 16;
+
+	private final Memory	memory;
+	private long			ptr;
+	private int				slots;	/* a power of two */
+	private int				size;	/* elements in the table, 0 excluded */
+	private boolean			zero;	/* whether 0 is an element */
+
+	/**
+	 * Creates an empty set in a memory
+	 * @param memory The memory to allocate the set into
+	 * @throws MemoryException if the memory can't fit the set
+	 */
+	public LongHashSet(Memory memory) throws MemoryException {
+		this(memory, INITIAL_SLOTS >> 1);
+	}
+
+	/**
+	 * Creates an empty set in a memory
+	 * @param memory The memory to allocate the set into
+	 * @param expected The number of elements to make room for
+	 * @throws MemoryException if the memory can't fit the set
+	 */
+	public LongHashSet(Memory memory, int expected) throws MemoryException {
+		this.memory = memory;
+		this.slots = slots_(expected);
+		this.ptr = m_alloc(memory, (long) slots * Long.BYTES);
+	}
+
+	/**
+	 * Gives the number of slots holding elements at most 3/4 full
+	 * @param elements The number of elements
+	 * @return A power of two
+	 */
+	private static int slots_(int elements) {
+		long needed = Math.max(INITIAL_SLOTS, (long) elements * 4 / 3 + 1);
+		if (needed > 1 << 30) throw new IllegalArgumentException("Too many elements : " + elements);
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	/**
+	 * Spreads an element over the slots
+	 * @param value An element
+	 * @param mask The slots minus one
+	 * @return The element's home slot
+	 */
+	private static int slot_(long value, int mask) {
+		long h = value * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ h >>> 32) & mask;
+	}
+
+	/**
+	 * Finds an element's slot
+	 * @param value An element, not 0
+	 * @return The element's slot if in the set, else the empty slot it would be added into
+	 */
+	private int find_(long value) {
+		int mask = slots - 1;
+		for (int slot = slot_(value, mask);; slot = slot + 1 & mask) {
+			long v = MemoryReader.read_long(memory, ptr + (long) slot * Long.BYTES);
+			if (v == value || v == 0) return slot;
+		}
+	}
+
+	/**
+	 * @param value An element
+	 * @return Whether the element is in the set
+	 */
+	public boolean contains(long value) {
+		if (value == 0) return zero;
+		return MemoryReader.read_long(memory, ptr + (long) find_(value) * Long.BYTES) != 0;
+	}
+
+	/**
+	 * Adds an element
+	 * @param value An element
+	 * @return Whether the element is a new one
+	 * @throws MemoryException if the memory can't fit the grown table
+	 */
+	public boolean add(long value) throws MemoryException {
+		if (value == 0) {
+			boolean added = !zero;
+			zero = true;
+			return added;
+		}
+		int slot = find_(value);
+		if (MemoryReader.read_long(memory, ptr + (long) slot * Long.BYTES) != 0) return false;
+		if ((size + 1) * 4L > slots * 3L) { /* grows first, the element's slot moves */
+			grow_();
+			slot = find_(value);
+		}
+		MemoryWriter.write_(memory, ptr + (long) slot * Long.BYTES, value);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Doubles the slots, moving every element over
+	 * @throws MemoryException if the memory can't fit the new table
+	 */
+	private void grow_() throws MemoryException {
+		if (slots == 1 << 30) throw new MemoryException("Set full");
+		long table = m_alloc(memory, (long) slots * 2 * Long.BYTES); /* first, so that a failure leaves the table as it was */
+		long old = ptr;
+		int count = slots;
+		slots <<= 1;
+		ptr = table;
+		for (int i = 0; i < count; i++) {
+			long value = MemoryReader.read_long(memory, old + (long) i * Long.BYTES);
+			if (value != 0) MemoryWriter.write_(memory, ptr + (long) find_(value) * Long.BYTES, value);
+		}
+		m_free(memory, old, (long) count * Long.BYTES);
+	}
+
+	/**
+	 * Removes an element
+	 * @param value An element
+	 * @return Whether the element was in the set
+	 */
+	public boolean remove(long value) {
+		if (value == 0) {
+			boolean removed = zero;
+			zero = false;
+			return removed;
+		}
+		int mask = slots - 1;
+		int hole = find_(value);
+		if (MemoryReader.read_long(memory, ptr + (long) hole * Long.BYTES) == 0) return false;
+		for (int slot = hole + 1 & mask;; slot = slot + 1 & mask) { /* shifts back the elements probed past the hole */
+			long v = MemoryReader.read_long(memory, ptr + (long) slot * Long.BYTES);
+			if (v == 0) break;
+			int home = slot_(v, mask);
+			if ((slot - home & mask) < (slot - hole & mask)) continue; /* its home lies between the hole and it */
+			MemoryWriter.write_(memory, ptr + (long) hole * Long.BYTES, v);
+			hole = slot;
+		}
+		MemoryWriter.write_(memory, ptr + (long) hole * Long.BYTES, 0L);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes every element, keeping the slots
+	 * @throws MemoryException if the memory can't fit the cleared table
+	 */
+	public void clear() throws MemoryException {
+		m_free(memory, ptr, (long) slots * Long.BYTES);
+		ptr = m_alloc(memory, (long) slots * Long.BYTES); /* allocated ranges come zeroed */
+		size = 0;
+		zero = false;
+	}
+
+	/**
+	 * Visits every element, in slot order
+	 * @param visitor The visitor
+	 */
+	public void for_each(LongConsumer visitor) {
+		if (zero) visitor.accept(0);
+		for (int i = 0; i < slots; i++) {
+			long value = MemoryReader.read_long(memory, ptr + (long) i * Long.BYTES);
+			if (value != 0) visitor.accept(value);
+		}
+	}
+
+	/**
+	 * @return The number of elements
+	 */
+	public int size() {
+		return size + (zero ? 1 : 0);
+	}
+
+	/**
+	 * @return Whether the set has no element
+	 */
+	public boolean is_empty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Fixes the set's pointer up after its memory was compacted
+	 * @param moved The runs the compaction moved
+	 */
+	public void relocate(MemoryRelocation moved) {
+		ptr = moved.relocate(ptr);
+	}
+
+	/**
+	 * Gives the set's range back to its memory, the set mustn't be used past it
+	 */
+	public void free() {
+		m_free(memory, ptr, (long) slots * Long.BYTES);
+		size = slots = 0;
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2015 | Thophile Dano, Spriithy
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.projectoctopus.memory.collection;
+
+import static com.projectoctopus.memory.Memory.m_alloc;
+import static com.projectoctopus.memory.Memory.m_free;
+
+import com.projectoctopus.memory.Memory;
+import com.projectoctopus.memory.MemoryRelocation;
+import com.projectoctopus.memory.exception.MemoryException;
+
+/**
+ * The storage shared by the lists of primitives : elements of a fixed width lying end to end in a single range
+ * allocated with {@link Memory#m_alloc(Memory, long)}, twice as large each time it's full<br>
+ * Elements are moved within the memory with {@link Memory#m_memmove} and {@link Memory#m_memcpy}, so that growing
+ * and removing allocate nothing on the heap
+ * @author Theophile Dano, Spriithy 2015
+ * @since 0.2
+ */
+abstract class PrimitiveArrayList {
+
+	static final int INITIAL_CAPACITY = 8;
+
+	final Memory	memory;
+	final int		width;		/* an element's size in bytes */
+	long			ptr;
+	int				capacity;
+	int				size;
+
+	/**
+	 * Creates an empty list in a memory
+	 * @param memory The memory to allocate the list into
+	 * @param capacity The number of elements to make room for
+	 * @param width An element's size in bytes
+	 * @throws MemoryException if the memory can't fit the list
+	 */
+	PrimitiveArrayList(Memory memory, int capacity, int width) throws MemoryException {
+		this.memory = memory;
+		this.width = width;
+		this.capacity = Math.max(1, capacity);
+		this.ptr = m_alloc(memory, (long) this.capacity * width);
+	}
+
+	/**
+	 * Gives an element's pointer
+	 * @param index The element's index
+	 * @return The element's pointer
+	 */
+	final long ptr_(int index) {
+		return ptr + (long) index * width;
+	}
+
+	/**
+	 * Checks an element exists
+	 * @param index The element's index
+	 * @throws IndexOutOfBoundsException if there's no such element
+	 */
+	final void check_(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+	}
+
+	/**
+	 * Makes room for a number of elements, at least doubling the capacity
+	 * @param needed The number of elements
+	 * @throws MemoryException if the memory can't fit them
+	 */
+	final void ensure_(long needed) throws MemoryException {
+		if (needed > Integer.MAX_VALUE) throw new MemoryException("List full");
+		if (needed <= capacity) return;
+		int grown = (int) Math.min(Integer.MAX_VALUE, Math.max((long) capacity << 1, needed));
+		long moved = m_alloc(memory, (long) grown * width);
+		Memory.m_memcpy(memory, ptr, moved, (long) size * width);
+		m_free(memory, ptr, (long) capacity * width);
+		ptr = moved;
+		capacity = grown;
+	}
+
+	/**
+	 * Removes an element, shifting the following ones down and clearing the last one
+	 * @param index The element's index
+	 */
+	final void remove_(int index) {
+		Memory.m_memmove(memory, ptr_(index + 1), ptr_(index), (long) (size - index - 1) * width);
+		Memory.m_memset(memory, ptr_(--size), width, (byte) 0x0);
+	}
+
+	/**
+	 * Removes every element, keeping the capacity
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return The number of elements
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Whether the list has no element
+	 */
+	public boolean is_empty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The number of elements the list holds without growing
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The pointer to the first element
+	 */
+	public long ptr() {
+		return ptr;
+	}
+
+	/**
+	 * Fixes the list's pointer up after its memory was compacted
+	 * @param moved The runs the compaction moved
+	 */
+	public void relocate(MemoryRelocation moved) {
+		ptr = moved.relocate(ptr);
+	}
+
+	/**
+	 * Gives the list's range back to its memory, the list mustn't be used past it
+	 */
+	public void free() {
+		m_free(memory, ptr, (long) capacity * width);
+		size = capacity = 0;
+	}
+
+}